@@ -0,0 +1,237 @@
+package com.ecommerce.ecommerce.cache;
+
+import com.ecommerce.ecommerce.events.CatalogListenerOrder;
+import com.ecommerce.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.ecommerce.events.ProductsImportedEvent;
+import com.ecommerce.ecommerce.payload.ProductDTO;
+import com.ecommerce.ecommerce.payload.ProductResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//Read-through cache for catalog listing pages. Entries are weighed by their estimated heap size and
+//tagged with the data they depend on, so product and category mutations only drop the entries they touch.
+@Component
+public class CatalogCache {
+    public static final String TAG_KEYWORD = "keyword";
+    public static final String TAG_FACETS = "facets";
+    private static final String TAG_ALL_PRODUCTS = "scope:all";
+    private static final String TAG_CATEGORY = "scope:category:";
+    private static final String TAG_CATEGORY_NAME = "scope:category-name:";
+    private static final String TAG_PRODUCT = "product:";
+    private static final String TAG_SORT = "sort:";
+
+    @Value("${catalog.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, Entry> cache;
+    //tag -> (key -> entry), untagging only removes the mapping if it still points at the removed entry
+    private final Map<String, Map<String, Entry>> keysByTag = new ConcurrentHashMap<>();
+    //bumped by every invalidation, a load that overlaps one is not trusted
+    private final AtomicLong generation = new AtomicLong();
+    private Counter invalidations;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> entry.weight())
+                .removalListener((String key, Entry entry, RemovalCause cause) -> untag(key, entry))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "catalog");
+        invalidations = meterRegistry.counter("catalog.cache.invalidations");
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader, Set<String> queryTags) {
+        long startGeneration = generation.get();
+        Entry entry = cache.get(key, k -> {
+            T value = loader.get();
+            Set<String> tags = new HashSet<>(queryTags);
+            tags.addAll(resultTags(value));
+            Entry loaded = new Entry(value, tags, weigh(value));
+            tags.forEach(tag -> keysByTag.computeIfAbsent(tag, t -> new ConcurrentHashMap<>()).put(k, loaded));
+            return loaded;
+        });
+        if (generation.get() != startGeneration) {
+            cache.invalidate(key);
+        }
+        return (T) entry.value();
+    }
+
+    public static String key(Object... parts) {
+        StringBuilder key = new StringBuilder();
+        for (Object part : parts) {
+            key.append(part == null ? "" : part).append('|');
+        }
+        return key.toString();
+    }
+
+    public static Set<String> productQueryTags(Long categoryId, String categoryName, boolean keyword, String sortBy,
+                                               boolean facets) {
+        Set<String> tags = new HashSet<>();
+        if (categoryId != null) {
+            tags.add(TAG_CATEGORY + categoryId);
+            //category listings are always ordered by price first
+            tags.add(TAG_SORT + "price");
+        } else if (categoryName != null && !categoryName.isEmpty()) {
+            tags.add(TAG_CATEGORY_NAME + categoryName.toLowerCase(Locale.ROOT));
+        } else {
+            tags.add(TAG_ALL_PRODUCTS);
+        }
+        if (keyword) {
+            tags.add(TAG_KEYWORD);
+        }
+        if (sortBy != null) {
+            tags.add(TAG_SORT + sortBy);
+        }
+        if (facets) {
+            tags.add(TAG_FACETS);
+        }
+        return tags;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.CACHE)
+    public void onProductChanged(ProductChangedEvent event) {
+        Set<String> tags = new HashSet<>();
+        tags.add(TAG_PRODUCT + event.getProductId());
+        switch (event.getChangeType()) {
+            case CREATED, DELETED -> {
+                //membership of every listing in the product's scope changes, pages behind it shift
+                tags.add(TAG_ALL_PRODUCTS);
+                tags.add(TAG_KEYWORD);
+                if (event.getCategoryId() != null) {
+                    tags.add(TAG_CATEGORY + event.getCategoryId());
+                }
+                if (event.getCategoryName() != null) {
+                    tags.add(TAG_CATEGORY_NAME + event.getCategoryName().toLowerCase(Locale.ROOT));
+                }
+            }
+            case UPDATED -> {
+                //pages ordered by a changed field may reorder, changed text may change keyword matches
+                event.getChangedFields().forEach(field -> tags.add(TAG_SORT + field));
+                if (event.getChangedFields().contains("productName") || event.getChangedFields().contains("description")) {
+                    tags.add(TAG_KEYWORD);
+                }
+                //facets aggregate price and stock over products that may not be on the cached page
+                if (event.getChangedFields().contains("specialPrice") || event.getChangedFields().contains("quantity")) {
+                    tags.add(TAG_FACETS);
+                }
+            }
+            case STOCK_UPDATED -> {
+                tags.add(TAG_SORT + "quantity");
+                tags.add(TAG_FACETS);
+            }
+            case IMAGE_UPDATED -> {
+            }
+        }
+        invalidate(tags);
+    }
+
+    //new products are on no cached page yet, only the listings of their scopes change
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.CACHE)
+    public void onProductsImported(ProductsImportedEvent event) {
+        Set<String> tags = new HashSet<>();
+        tags.add(TAG_ALL_PRODUCTS);
+        tags.add(TAG_KEYWORD);
+        event.getCategoryIds().forEach(categoryId -> tags.add(TAG_CATEGORY + categoryId));
+        event.getCategoryNames().forEach(categoryName -> tags.add(TAG_CATEGORY_NAME + categoryName.toLowerCase(Locale.ROOT)));
+        invalidate(tags);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.CACHE)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        Set<String> tags = new HashSet<>();
+        //facets carry category names
+        tags.add(TAG_FACETS);
+        if (event.getChangeType() != CategoryChangedEvent.ChangeType.CREATED) {
+            tags.add(TAG_CATEGORY_NAME + event.getCategoryName().toLowerCase(Locale.ROOT));
+        }
+        if (event.getChangeType() == CategoryChangedEvent.ChangeType.DELETED) {
+            //the category's products are deleted with it
+            tags.add(TAG_CATEGORY + event.getCategoryId());
+            tags.add(TAG_ALL_PRODUCTS);
+            tags.add(TAG_KEYWORD);
+        }
+        invalidate(tags);
+    }
+
+    public void invalidate(Set<String> tags) {
+        generation.incrementAndGet();
+        for (String tag : tags) {
+            Map<String, Entry> keys = keysByTag.remove(tag);
+            if (keys != null) {
+                invalidations.increment(keys.size());
+                cache.invalidateAll(keys.keySet());
+            }
+        }
+    }
+
+    private void untag(String key, Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (String tag : entry.tags()) {
+            Map<String, Entry> keys = keysByTag.get(tag);
+            if (keys != null) {
+                keys.remove(key, entry);
+            }
+        }
+    }
+
+    private static Set<String> resultTags(Object value) {
+        Set<String> tags = new HashSet<>();
+        if (value instanceof ProductResponse productResponse) {
+            productResponse.getProducts().forEach(product -> tags.add(TAG_PRODUCT + product.getProductId()));
+        }
+        return tags;
+    }
+
+    //rough retained size in bytes: object headers plus two bytes per string character
+    private static int weigh(Object value) {
+        int weight = 64;
+        if (value instanceof ProductResponse productResponse) {
+            for (ProductDTO product : productResponse.getProducts()) {
+                weight += 96 + chars(product.getProductName()) + chars(product.getDescription()) + chars(product.getImage());
+            }
+            weight += chars(productResponse.getNextCursor());
+            if (productResponse.getFacets() != null) {
+                weight += 64 * (productResponse.getFacets().getCategories().size()
+                        + productResponse.getFacets().getPriceBuckets().size());
+            }
+        }
+        return weight;
+    }
+
+    private static int chars(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
+
+    private record Entry(Object value, Set<String> tags, int weight) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.ecommerce.ecommerce.cache;
+
+import com.ecommerce.ecommerce.events.CatalogListenerOrder;
+import com.ecommerce.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.ecommerce.events.ProductsImportedEvent;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Monotonic catalog versions behind the ETags of the public catalog endpoints. Counters move after the change commits,
+//and a version has to be read before the response data, so an ETag never labels data newer than it.
+@Component
+public class CatalogVersions {
+    //counters restart with the process, the epoch keeps ETags of an earlier run from matching
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final Map<Long, AtomicLong> categoryVersions = new ConcurrentHashMap<>();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.VERSIONS)
+    public void onProductChanged(ProductChangedEvent event) {
+        bumpCategory(event.getCategoryId());
+        catalogVersion.incrementAndGet();
+    }
+
+    //one bump per category of the chunk, however many of its products were imported
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.VERSIONS)
+    public void onProductsImported(ProductsImportedEvent event) {
+        event.getCategoryIds().forEach(this::bumpCategory);
+        catalogVersion.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.VERSIONS)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.getChangeType() == CategoryChangedEvent.ChangeType.DELETED) {
+            categoryVersions.remove(event.getCategoryId());
+        } else {
+            bumpCategory(event.getCategoryId());
+        }
+        catalogVersion.incrementAndGet();
+    }
+
+    public String catalogETag() {
+        return "\"c-" + epoch + "-" + catalogVersion.get() + "\"";
+    }
+
+    //categoryId comes straight from the request path, reading it never adds an entry; unchanged categories are at 0
+    public String categoryETag(Long categoryId) {
+        AtomicLong version = categoryVersions.get(categoryId);
+        return "\"k" + categoryId + "-" + epoch + "-" + (version != null ? version.get() : 0) + "\"";
+    }
+
+    private void bumpCategory(Long categoryId) {
+        if (categoryId != null) {
+            categoryVersions.computeIfAbsent(categoryId, id -> new AtomicLong()).incrementAndGet();
+        }
+    }
+}
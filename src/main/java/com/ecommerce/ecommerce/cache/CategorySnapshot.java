@@ -0,0 +1,170 @@
+package com.ecommerce.ecommerce.cache;
+
+import com.ecommerce.ecommerce.events.CatalogListenerOrder;
+import com.ecommerce.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.ecommerce.exceptions.APIException;
+import com.ecommerce.ecommerce.model.Category;
+import com.ecommerce.ecommerce.payload.CategoryDTO;
+import com.ecommerce.ecommerce.payload.CategoryResponse;
+import com.ecommerce.ecommerce.repositories.CategoryRepository;
+import com.ecommerce.ecommerce.util.PageCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+//The whole category list as an immutable snapshot, one pre-sorted copy per sort key and direction.
+//Reads page through the current snapshot without locking or touching the database; a committed category change
+//builds a complete new snapshot and swaps it in with a single volatile write.
+@Component
+public class CategorySnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(CategorySnapshot.class);
+
+    private static final Comparator<Entry> BY_ID = Comparator.comparing(Entry::categoryId);
+    private static final Comparator<Entry> BY_NAME = Comparator.comparing(Entry::categoryName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(BY_ID);
+
+    @Value("${catalog.categories.preload:true}")
+    private boolean preload;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    private volatile Snapshot snapshot;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (preload) {
+            rebuild();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        rebuild();
+    }
+
+    //serialized so a rebuild that read older rows can never be swapped in after a newer one
+    public synchronized void rebuild() {
+        List<Entry> entries = categoryRepository.findAll().stream()
+                .map(Entry::new)
+                .toList();
+        snapshot = new Snapshot(entries);
+        logger.info("Category snapshot built with {} categories", entries.size());
+    }
+
+    public CategoryResponse page(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder, boolean includeCount) {
+        List<Entry> sorted = current().sorted(sortBy, sortOrder);
+        int from = (int) Math.min((long) pageNumber * pageSize, sorted.size());
+        int to = (int) Math.min((long) from + pageSize, sorted.size());
+        if (from == to) {
+            throw new APIException("No category created till now.");
+        }
+        CategoryResponse categoryResponse = response(sorted, from, to, pageSize, includeCount);
+        categoryResponse.setPageNumber(pageNumber);
+        categoryResponse.setLastPage(to == sorted.size());
+        return categoryResponse;
+    }
+
+    //keyset variant: the page starts right after the row the cursor points at, found by binary search
+    public CategoryResponse pageAfter(String cursor, Integer pageSize, String sortBy, String sortOrder, boolean includeCount) {
+        boolean ascending = sortOrder.equalsIgnoreCase("asc");
+        List<Entry> sorted = current().sorted(sortBy, sortOrder);
+        int from = 0;
+        if (!cursor.isEmpty()) {
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            pageCursor.verify(sortBy, ascending);
+            Entry anchor = new Entry(pageCursor.getLastId(), pageCursor.getLastValue());
+            int index = Collections.binarySearch(sorted, anchor, comparator(sortBy, ascending));
+            from = index >= 0 ? index + 1 : -index - 1;
+        }
+        int to = (int) Math.min((long) from + pageSize, sorted.size());
+        if (from == to) {
+            throw new APIException("No category created till now.");
+        }
+        CategoryResponse categoryResponse = response(sorted, from, to, pageSize, includeCount);
+        boolean lastPage = to == sorted.size();
+        categoryResponse.setLastPage(lastPage);
+        if (!lastPage) {
+            Entry last = sorted.get(to - 1);
+            String lastValue = "categoryName".equals(sortBy) ? last.categoryName() : String.valueOf(last.categoryId());
+            categoryResponse.setNextCursor(new PageCursor(sortBy, ascending, last.categoryId(), lastValue).encode());
+        }
+        return categoryResponse;
+    }
+
+    private CategoryResponse response(List<Entry> sorted, int from, int to, int pageSize, boolean includeCount) {
+        CategoryResponse categoryResponse = new CategoryResponse();
+        categoryResponse.setContent(sorted.subList(from, to).stream()
+                .map(entry -> new CategoryDTO(entry.categoryId(), entry.categoryName()))
+                .toList());
+        categoryResponse.setPageSize(pageSize);
+        if (includeCount) {
+            categoryResponse.setTotalElements((long) sorted.size());
+            categoryResponse.setTotalPages((int) Math.ceil((double) sorted.size() / pageSize));
+        }
+        return categoryResponse;
+    }
+
+    //loaded on first use when preloading is switched off
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    rebuild();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static Comparator<Entry> comparator(String sortBy, boolean ascending) {
+        Comparator<Entry> comparator = switch (sortBy) {
+            case "categoryId" -> BY_ID;
+            case "categoryName" -> BY_NAME;
+            default -> throw new APIException("Categories cannot be sorted by " + sortBy);
+        };
+        return ascending ? comparator : comparator.reversed();
+    }
+
+    private record Entry(Long categoryId, String categoryName) {
+        private Entry(Category category) {
+            this(category.getCategoryId(), category.getCategoryName());
+        }
+    }
+
+    private static final class Snapshot {
+        private final List<Entry> byIdAscending;
+        private final List<Entry> byIdDescending;
+        private final List<Entry> byNameAscending;
+        private final List<Entry> byNameDescending;
+
+        private Snapshot(List<Entry> entries) {
+            byIdAscending = entries.stream().sorted(comparator("categoryId", true)).toList();
+            byIdDescending = entries.stream().sorted(comparator("categoryId", false)).toList();
+            byNameAscending = entries.stream().sorted(comparator("categoryName", true)).toList();
+            byNameDescending = entries.stream().sorted(comparator("categoryName", false)).toList();
+        }
+
+        private List<Entry> sorted(String sortBy, String sortOrder) {
+            boolean ascending = sortOrder.equalsIgnoreCase("asc");
+            return switch (sortBy) {
+                case "categoryId" -> ascending ? byIdAscending : byIdDescending;
+                case "categoryName" -> ascending ? byNameAscending : byNameDescending;
+                default -> throw new APIException("Categories cannot be sorted by " + sortBy);
+            };
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ecommerce.ecommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//Bytes of the most requested small images in direct buffers, outside the heap the GC has to scan.
+//Large images are not cached, they are sent straight from the file.
+@Component
+public class ImageBytesCache {
+    @Value("${image.cache.max-bytes:16777216}")
+    private long maxBytes;
+
+    @Value("${image.cache.max-entry-bytes:262144}")
+    private long maxEntryBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, Entry> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> entry.bytes().capacity())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "images");
+    }
+
+    public Entry get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    //reads the file into a new entry, null when it is too large to be worth caching
+    public Entry load(String key, Path file, long length, long lastModified) throws IOException {
+        if (length > maxEntryBytes) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocateDirect((int) length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes) < 0) {
+                    throw new EOFException("Image shrank while reading " + file);
+                }
+            }
+        }
+        Entry entry = new Entry(bytes.flip().asReadOnlyBuffer(), lastModified);
+        cache.put(key, entry);
+        return entry;
+    }
+
+    public record Entry(ByteBuffer bytes, long lastModified) {
+        public long length() {
+            return bytes.capacity();
+        }
+
+        //an independent view, so concurrent responses never share a position
+        public ByteBuffer slice(long start, long count) {
+            return bytes.duplicate().position((int) start).limit((int) (start + count));
+        }
+    }
+}
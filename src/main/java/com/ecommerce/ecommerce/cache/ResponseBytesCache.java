@@ -0,0 +1,166 @@
+package com.ecommerce.ecommerce.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+//Encoded bodies of hot catalog pages, plain and gzipped, handed to the servlet output stream as they are.
+//An entry remembers the ETag it was built under: once the catalog version moves on it no longer matches and is rebuilt,
+//so the same product and category changes that bump the versions retire the bytes. The gzipped body is a different
+//representation and is sent under its own ETag, so a cache never takes the bytes of one for the other.
+@Component
+public class ResponseBytesCache {
+    //bodies this small gain nothing from gzip, the header overhead can even make them larger
+    private static final int MIN_GZIP_BYTES = 512;
+
+    @Value("${catalog.response-cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, Entry> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> entry.weight())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "catalog-bytes");
+    }
+
+    //eTag is the catalog version the page belongs to. Revalidation is answered from the request headers alone, a
+    //client holding the current version costs no query or serialization even when the bytes are not cached
+    public ResponseEntity<byte[]> respond(HttpServletRequest request, String eTag, Supplier<Object> body) {
+        boolean acceptsGzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        //small bodies go out plain whatever the client accepts, so either tag may be the one it holds
+        if (acceptsGzip && matchesIfNoneMatch(request, gzipETag(eTag))) {
+            return notModified(gzipETag(eTag));
+        }
+        if (matchesIfNoneMatch(request, eTag)) {
+            return notModified(eTag);
+        }
+        String key = key(request);
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null || !entry.eTag().equals(eTag)) {
+            entry = encode(eTag, body.get());
+            cache.put(key, entry);
+        }
+        boolean gzip = entry.gzip() != null && acceptsGzip;
+        String representationETag = gzip ? gzipETag(eTag) : eTag;
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(representationETag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        byte[] bytes = gzip ? entry.gzip() : entry.json();
+        return response.contentLength(bytes.length).body(bytes);
+    }
+
+    private static ResponseEntity<byte[]> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .build();
+    }
+
+    //If-None-Match uses weak comparison, "*" matches any current representation
+    private static boolean matchesIfNoneMatch(HttpServletRequest request, String eTag) {
+        Enumeration<String> headers = request.getHeaders(HttpHeaders.IF_NONE_MATCH);
+        while (headers != null && headers.hasMoreElements()) {
+            for (String tag : headers.nextElement().split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(eTag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Entry encode(String eTag, Object body) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            return new Entry(eTag, json, json.length >= MIN_GZIP_BYTES ? gzip(json) : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize catalog response", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    //path plus parameters in a fixed order, so reordered query strings share an entry
+    private static String key(HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(request.getRequestURI());
+        Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+        parameters.forEach((name, values) -> key.append('|').append(name).append('=').append(Arrays.toString(values)));
+        return key.toString();
+    }
+
+    //"c-1-7" becomes "c-1-7-gzip"
+    private static String gzipETag(String eTag) {
+        return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length < 2 || !parts[1].replace(" ", "").equalsIgnoreCase("q=0");
+            }
+        }
+        return false;
+    }
+
+    private record Entry(String eTag, byte[] json, byte[] gzip) {
+        private int weight() {
+            return 64 + eTag.length() * 2 + json.length + (gzip != null ? gzip.length : 0);
+        }
+    }
+}
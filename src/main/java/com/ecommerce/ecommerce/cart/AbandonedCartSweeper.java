@@ -0,0 +1,147 @@
+package com.ecommerce.ecommerce.cart;
+
+import com.ecommerce.ecommerce.repositories.CartItemRepository;
+import com.ecommerce.ecommerce.repositories.CartRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+//Deletes carts nobody has changed for idle-days, with their items, so carts and cart_items stop growing with every
+//visitor who never came back. Idle carts are walked in (updatedAt, cartId) keyset order one chunk at a time; each
+//chunk is locked, re-checked and deleted in a short transaction of its own, with a pause before the next one.
+@Component
+public class AbandonedCartSweeper {
+    private static final Logger logger = LoggerFactory.getLogger(AbandonedCartSweeper.class);
+
+    @Value("${cart.sweeper.idle-days:30}")
+    private int idleDays;
+
+    @Value("${cart.sweeper.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${cart.sweeper.pause-ms:100}")
+    private long pauseMillis;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //only present with cart.write-behind.enabled
+    @Autowired
+    private ObjectProvider<CartStore> cartStore;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${cart.sweeper.cron:-}")
+    public synchronized Reclaimed sweep() {
+        Instant cutoff = Instant.now().minus(idleDays, ChronoUnit.DAYS);
+        if (!stampUndatedCarts()) {
+            return new Reclaimed(0, 0);
+        }
+        CartStore store = cartStore.getIfAvailable();
+        Instant afterUpdatedAt = Instant.EPOCH;
+        Long afterCartId = 0L;
+        long carts = 0;
+        long cartItems = 0;
+        while (true) {
+            List<IdleCart> chunk = cartRepository.findIdleCartsAfter(cutoff, afterUpdatedAt, afterCartId,
+                    PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            IdleCart last = chunk.get(chunk.size() - 1);
+            afterUpdatedAt = last.updatedAt();
+            afterCartId = last.cartId();
+            //carts held by the write-behind store are in use whatever their row says
+            List<Long> cartIds = chunk.stream()
+                    .map(IdleCart::cartId)
+                    .filter(cartId -> store == null || !store.isActive(cartId))
+                    .toList();
+            if (!cartIds.isEmpty()) {
+                Reclaimed deleted = transactionTemplate.execute(status -> delete(cartIds, cutoff));
+                carts += deleted.carts();
+                cartItems += deleted.cartItems();
+            }
+            if (chunk.size() < chunkSize || !pause()) {
+                break;
+            }
+        }
+        meterRegistry.counter("cart.sweeper.deleted", "table", "carts").increment(carts);
+        meterRegistry.counter("cart.sweeper.deleted", "table", "cart_items").increment(cartItems);
+        logger.info("Abandoned-cart sweep deleted {} carts and {} cart items idle since before {}",
+                carts, cartItems, cutoff);
+        return new Reclaimed(carts, cartItems);
+    }
+
+    //carts from before updatedAt was recorded start their idle time now; they are stamped a chunk at a time, with
+    //the same pause as the deletes, so the first sweep over an old table holds no long lock either.
+    //false when interrupted
+    private boolean stampUndatedCarts() {
+        Long afterCartId = 0L;
+        while (true) {
+            List<Long> cartIds = cartRepository.findUndatedCartIdsAfter(afterCartId, PageRequest.of(0, chunkSize));
+            if (cartIds.isEmpty()) {
+                return true;
+            }
+            afterCartId = cartIds.get(cartIds.size() - 1);
+            Instant now = Instant.now();
+            transactionTemplate.executeWithoutResult(status -> cartRepository.stampUndatedCarts(cartIds, now));
+            if (cartIds.size() < chunkSize) {
+                return true;
+            }
+            if (!pause()) {
+                return false;
+            }
+        }
+    }
+
+    private Reclaimed delete(List<Long> cartIds, Instant cutoff) {
+        List<Long> idle = cartRepository.lockIdleCarts(cartIds, cutoff);
+        if (idle.isEmpty()) {
+            return new Reclaimed(0, 0);
+        }
+        int cartItems = cartItemRepository.deleteAllByCartIdIn(idle);
+        int carts = cartRepository.deleteAllByCartIdIn(idle);
+        return new Reclaimed(carts, cartItems);
+    }
+
+    //false when interrupted, the rest is left for the next run
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public record Reclaimed(long carts, long cartItems) {
+    }
+}
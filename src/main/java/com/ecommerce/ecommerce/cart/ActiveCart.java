@@ -0,0 +1,101 @@
+package com.ecommerce.ecommerce.cart;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//A cart held by CartStore. Only touched while holding its monitor, which CartStore takes around every operation.
+public class ActiveCart {
+    private final String email;
+    private final Long cartId;
+    private final Map<Long, CartLine> lines = new LinkedHashMap<>();
+    //bumped by every change, CartStore journals the cart when an operation moved it
+    private long version;
+    private boolean dirty;
+    private boolean evicted;
+    private long lastAccess = System.currentTimeMillis();
+
+    ActiveCart(String email, Long cartId, List<CartLine> lines) {
+        this.email = email;
+        this.cartId = cartId;
+        lines.forEach(line -> this.lines.put(line.productId(), line));
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Long getCartId() {
+        return cartId;
+    }
+
+    public CartLine getLine(Long productId) {
+        return lines.get(productId);
+    }
+
+    public Collection<CartLine> getLines() {
+        return lines.values();
+    }
+
+    public double getTotalPrice() {
+        return lines.values().stream().mapToDouble(line -> line.productPrice() * line.quantity()).sum();
+    }
+
+    public void putLine(CartLine line) {
+        lines.put(line.productId(), line);
+        changed();
+    }
+
+    public CartLine removeLine(Long productId) {
+        CartLine removed = lines.remove(productId);
+        if (removed != null) {
+            changed();
+        }
+        return removed;
+    }
+
+    public void clear() {
+        if (!lines.isEmpty()) {
+            lines.clear();
+            changed();
+        }
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    boolean isEvicted() {
+        return evicted;
+    }
+
+    void evict() {
+        evicted = true;
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    CartSnapshot snapshot() {
+        return new CartSnapshot(email, cartId, List.copyOf(lines.values()), getTotalPrice(), evicted);
+    }
+
+    private void changed() {
+        version++;
+        dirty = true;
+    }
+}
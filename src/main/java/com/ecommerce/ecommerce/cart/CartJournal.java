@@ -0,0 +1,131 @@
+package com.ecommerce.ecommerce.cart;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+//Append-only log of cart snapshots, one JSON line each, split into numbered segments.
+//A segment can be deleted once every cart journaled in it has been persisted; recovery replays the
+//remaining segments in order and keeps the last snapshot of every cart.
+class CartJournal {
+    private static final Logger logger = LoggerFactory.getLogger(CartJournal.class);
+    private static final String PREFIX = "cart-journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    //fsync every append, otherwise the OS decides when acknowledged changes reach the disk
+    private final boolean sync;
+    private FileChannel segment;
+    private long segmentNumber;
+
+    CartJournal(Path directory, ObjectMapper objectMapper, boolean sync) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.sync = sync;
+    }
+
+    //replays what a previous run left behind and opens a fresh segment after it
+    synchronized Collection<CartSnapshot> open() throws IOException {
+        Files.createDirectories(directory);
+        Map<Long, CartSnapshot> latest = new LinkedHashMap<>();
+        List<Long> segments = segments();
+        for (Long number : segments) {
+            try (BufferedReader reader = Files.newBufferedReader(path(number), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        CartSnapshot snapshot = objectMapper.readValue(line, CartSnapshot.class);
+                        latest.remove(snapshot.cartId());
+                        latest.put(snapshot.cartId(), snapshot);
+                    } catch (JsonProcessingException e) {
+                        //a torn last line from a crash mid-append, the change was never acknowledged
+                        logger.warn("Skipping unreadable cart journal entry in segment {}", number);
+                    }
+                }
+            }
+        }
+        segmentNumber = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        startSegment();
+        latest.values().removeIf(CartSnapshot::evicted);
+        return latest.values();
+    }
+
+    synchronized void append(CartSnapshot snapshot) {
+        try {
+            byte[] line = (objectMapper.writeValueAsString(snapshot) + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            if (sync) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal cart " + snapshot.cartId(), e);
+        }
+    }
+
+    //seals the current segment and returns its number, later appends go to a new one
+    synchronized long rotate() throws IOException {
+        long sealed = segmentNumber;
+        startSegment();
+        return sealed;
+    }
+
+    void deleteThrough(long number) throws IOException {
+        for (Long existing : segments()) {
+            if (existing <= number) {
+                Files.deleteIfExists(path(existing));
+            }
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.close();
+        }
+    }
+
+    private void startSegment() throws IOException {
+        if (segment != null) {
+            segment.force(true);
+            segment.close();
+        }
+        segmentNumber++;
+        segment = FileChannel.open(path(segmentNumber),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .forEach(name -> numbers.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()))));
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private Path path(long number) {
+        return directory.resolve(PREFIX + number + SUFFIX);
+    }
+}
@@ -0,0 +1,5 @@
+package com.ecommerce.ecommerce.cart;
+
+//One product line of an in-memory cart, priced when it was added or last repriced
+public record CartLine(Long productId, int quantity, double productPrice, double discount) {
+}
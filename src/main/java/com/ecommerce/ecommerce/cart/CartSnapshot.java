@@ -0,0 +1,7 @@
+package com.ecommerce.ecommerce.cart;
+
+import java.util.List;
+
+//Complete state of one cart as journaled and persisted; an evicted snapshot tells recovery the database already has it
+public record CartSnapshot(String email, Long cartId, List<CartLine> lines, double totalPrice, boolean evicted) {
+}
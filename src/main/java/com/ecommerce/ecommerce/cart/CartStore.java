@@ -0,0 +1,361 @@
+package com.ecommerce.ecommerce.cart;
+
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.ecommerce.model.Cart;
+import com.ecommerce.ecommerce.model.CartItem;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.model.User;
+import com.ecommerce.ecommerce.repositories.CartRepository;
+import com.ecommerce.ecommerce.repositories.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+//Write-behind store for active carts, keyed by the owner's email. Operations run against the in-memory cart under
+//its monitor and are journaled before they return; a scheduled flush writes every cart changed since the last one
+//in batched transactions, however many operations it went through, and retires the journal segments it covered.
+@Component
+@ConditionalOnProperty(name = "cart.write-behind.enabled", havingValue = "true")
+@DependsOn("idSequenceMigration")
+public class CartStore {
+    private static final Logger logger = LoggerFactory.getLogger(CartStore.class);
+
+    @Value("${cart.write-behind.journal-dir:cart-journal}")
+    private String journalDirectory;
+
+    @Value("${cart.write-behind.journal-sync:true}")
+    private boolean journalSync;
+
+    @Value("${cart.write-behind.batch-size:200}")
+    private int batchSize;
+
+    //clean carts untouched for this long are dropped from memory at the next flush
+    @Value("${cart.write-behind.idle-eviction-ms:600000}")
+    private long idleEvictionMillis;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Map<String, ActiveCart> cartsByEmail = new HashMap<>();
+    private final Map<Long, ActiveCart> cartsById = new HashMap<>();
+    private final Object flushLock = new Object();
+    private TransactionTemplate transactionTemplate;
+    private CartJournal journal;
+
+    //carts the previous run acknowledged but did not persist are written before the first request
+    @PostConstruct
+    public void init() throws IOException {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        //flushes commit on their own, whatever transaction the caller is in
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        journal = new CartJournal(Paths.get(journalDirectory), objectMapper, journalSync);
+        Collection<CartSnapshot> recovered = journal.open();
+        long sealed = journal.rotate();
+        if (!recovered.isEmpty()) {
+            persist(new ArrayList<>(recovered));
+            logger.info("Recovered {} carts from the cart journal", recovered.size());
+        }
+        journal.deleteThrough(sealed);
+    }
+
+    //runs the operation against the user's cart, loading it (or creating it for owner) first; the change is
+    //journaled before this returns
+    public <T> T apply(String email, Supplier<User> owner, Function<ActiveCart, T> operation) {
+        while (true) {
+            ActiveCart cart = active(email);
+            if (cart == null) {
+                cart = register(load(email, owner));
+            }
+            synchronized (cart) {
+                if (!cart.isEvicted()) {
+                    return run(cart, operation);
+                }
+            }
+        }
+    }
+
+    //runs the operation if the cart is held in memory
+    public <T> Optional<T> applyIfActive(Long cartId, Function<ActiveCart, T> operation) {
+        ActiveCart cart;
+        synchronized (cartsByEmail) {
+            cart = cartsById.get(cartId);
+        }
+        if (cart == null) {
+            return Optional.empty();
+        }
+        synchronized (cart) {
+            return cart.isEvicted() ? Optional.empty() : Optional.ofNullable(run(cart, operation));
+        }
+    }
+
+    //whether the cart is held in memory; its row may be older than its last change
+    public boolean isActive(Long cartId) {
+        synchronized (cartsByEmail) {
+            return cartsById.containsKey(cartId);
+        }
+    }
+
+    //persists the cart if it has unflushed changes and drops it, so database-side readers and writers see its current state
+    public void evict(String email) {
+        //under the flush lock, so a flush cannot write an older snapshot of this cart after it
+        synchronized (flushLock) {
+            ActiveCart cart = active(email);
+            if (cart == null) {
+                return;
+            }
+            synchronized (cart) {
+                if (cart.isEvicted()) {
+                    return;
+                }
+                if (cart.isDirty()) {
+                    persist(List.of(cart.snapshot()));
+                    cart.setDirty(false);
+                }
+                remove(cart);
+            }
+        }
+    }
+
+    //writes every changed cart; the journal segment sealed first can go once all of them are committed
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        synchronized (flushLock) {
+            long sealed;
+            try {
+                sealed = journal.rotate();
+            } catch (IOException e) {
+                logger.error("Could not rotate the cart journal", e);
+                return;
+            }
+            List<ActiveCart> carts;
+            synchronized (cartsByEmail) {
+                carts = new ArrayList<>(cartsByEmail.values());
+            }
+            long idleBefore = System.currentTimeMillis() - idleEvictionMillis;
+            List<ActiveCart> dirty = new ArrayList<>();
+            List<CartSnapshot> snapshots = new ArrayList<>();
+            for (ActiveCart cart : carts) {
+                synchronized (cart) {
+                    if (cart.isEvicted()) {
+                        continue;
+                    }
+                    if (cart.isDirty()) {
+                        snapshots.add(cart.snapshot());
+                        cart.setDirty(false);
+                        dirty.add(cart);
+                    } else if (cart.getLastAccess() < idleBefore) {
+                        remove(cart);
+                    }
+                }
+            }
+            try {
+                persist(snapshots);
+                journal.deleteThrough(sealed);
+            } catch (RuntimeException | IOException e) {
+                //the sealed segments stay until a later flush gets these carts into the database
+                dirty.forEach(cart -> {
+                    synchronized (cart) {
+                        cart.setDirty(true);
+                    }
+                });
+                logger.error("Could not flush {} carts, retrying with the next flush", snapshots.size(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        journal.close();
+    }
+
+    //keeps held carts in step with the price and deletion changes the database paths apply to stored carts
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        UnaryOperator<CartLine> change;
+        if (event.getChangeType() == ProductChangedEvent.ChangeType.DELETED) {
+            change = line -> null;
+        } else if (event.getChangeType() == ProductChangedEvent.ChangeType.UPDATED
+                && event.getChangedFields().contains("specialPrice")) {
+            Product product = event.getProduct();
+            change = line -> new CartLine(line.productId(), line.quantity(), product.getSpecialPrice(), product.getDiscount());
+        } else {
+            return;
+        }
+        List<ActiveCart> carts;
+        synchronized (cartsByEmail) {
+            carts = new ArrayList<>(cartsByEmail.values());
+        }
+        for (ActiveCart cart : carts) {
+            synchronized (cart) {
+                CartLine line = cart.getLine(event.getProductId());
+                if (cart.isEvicted() || line == null) {
+                    continue;
+                }
+                run(cart, held -> {
+                    CartLine changed = change.apply(line);
+                    if (changed == null) {
+                        held.removeLine(line.productId());
+                    } else {
+                        held.putLine(changed);
+                    }
+                    return null;
+                });
+            }
+        }
+    }
+
+    private <T> T run(ActiveCart cart, Function<ActiveCart, T> operation) {
+        long version = cart.getVersion();
+        T result = operation.apply(cart);
+        cart.touch();
+        if (cart.getVersion() != version) {
+            journal.append(cart.snapshot());
+        }
+        return result;
+    }
+
+    private ActiveCart active(String email) {
+        synchronized (cartsByEmail) {
+            return cartsByEmail.get(email);
+        }
+    }
+
+    private ActiveCart register(ActiveCart loaded) {
+        synchronized (cartsByEmail) {
+            ActiveCart existing = cartsByEmail.putIfAbsent(loaded.getEmail(), loaded);
+            if (existing != null) {
+                return existing;
+            }
+            cartsById.put(loaded.getCartId(), loaded);
+            return loaded;
+        }
+    }
+
+    //called holding the cart's monitor; the tombstone keeps recovery from replaying state the database has moved past
+    private void remove(ActiveCart cart) {
+        cart.evict();
+        journal.append(cart.snapshot());
+        synchronized (cartsByEmail) {
+            cartsByEmail.remove(cart.getEmail(), cart);
+            cartsById.remove(cart.getCartId(), cart);
+        }
+    }
+
+    private ActiveCart load(String email, Supplier<User> owner) {
+        return transactionTemplate.execute(status -> {
+            Cart cart = cartRepository.findCartWithItemsByEmail(email);
+            if (cart == null) {
+                cart = new Cart();
+                cart.setTotalPrice(0.0);
+                cart.setUser(owner.get());
+                cart = cartRepository.save(cart);
+            }
+            List<CartLine> lines = cart.getCartItems().stream()
+                    .map(item -> new CartLine(item.getProduct().getProductId(), item.getQuantity(),
+                            item.getProductPrice(), item.getDiscount()))
+                    .toList();
+            return new ActiveCart(email, cart.getCartId(), lines);
+        });
+    }
+
+    private void persist(List<CartSnapshot> snapshots) {
+        for (int from = 0; from < snapshots.size(); from += batchSize) {
+            List<CartSnapshot> batch = snapshots.subList(from, Math.min(from + batchSize, snapshots.size()));
+            transactionTemplate.executeWithoutResult(status -> persistBatch(batch));
+        }
+    }
+
+    //one query for the carts with their lines and one for the products, then every line is reconciled with the snapshot
+    private void persistBatch(List<CartSnapshot> snapshots) {
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+        Map<Long, Cart> carts = cartRepository.findAllWithItemsByCartIdIn(
+                        snapshots.stream().map(CartSnapshot::cartId).toList()).stream()
+                .collect(Collectors.toMap(Cart::getCartId, Function.identity()));
+        Set<Long> productIds = snapshots.stream()
+                .flatMap(snapshot -> snapshot.lines().stream())
+                .map(CartLine::productId)
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getProductId, Function.identity()));
+        for (CartSnapshot snapshot : snapshots) {
+            Cart cart = carts.get(snapshot.cartId());
+            if (cart == null) {
+                continue;
+            }
+            Map<Long, CartItem> items = new HashMap<>();
+            //compared by identity, the entities' generated equals walks the cart <-> item cycle
+            Set<CartItem> stale = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (CartItem item : cart.getCartItems()) {
+                if (items.putIfAbsent(item.getProduct().getProductId(), item) != null) {
+                    stale.add(item);
+                }
+            }
+            double totalPrice = 0.0;
+            for (CartLine line : snapshot.lines()) {
+                Product product = products.get(line.productId());
+                if (product == null) {
+                    //deleted meanwhile, its line goes with it
+                    continue;
+                }
+                CartItem item = items.remove(line.productId());
+                if (item == null) {
+                    item = new CartItem();
+                    item.setCart(cart);
+                    item.setProduct(product);
+                    cart.getCartItems().add(item);
+                }
+                item.setQuantity(line.quantity());
+                item.setProductPrice(line.productPrice());
+                item.setDiscount(line.discount());
+                totalPrice += line.productPrice() * line.quantity();
+            }
+            stale.addAll(items.values());
+            cart.getCartItems().removeIf(stale::contains);
+            cart.setTotalPrice(totalPrice);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.ecommerce.ecommerce.cart;
+
+import com.ecommerce.ecommerce.exceptions.APIException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+//Runs a cart change in a transaction of its own and runs it again, up to max-attempts times with a short randomized
+//pause, when a concurrent change to the same cart got there first: a stale version, a deadlock or a lock timeout.
+//A caller that is already in a transaction gets a single attempt, since only that transaction can be rolled back.
+@Component
+public class CartUpdateRetry {
+
+    @Value("${cart.update.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${cart.update.backoff-ms:10}")
+    private long backoffMillis;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    //operation tags the cart.update.conflicts and cart.update.retries counters
+    public <T> T execute(String operation, Supplier<T> change) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return change.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> change.get());
+            } catch (ConcurrencyFailureException | OptimisticLockException | PessimisticLockException e) {
+                meterRegistry.counter("cart.update.conflicts", "operation", operation).increment();
+                if (attempt >= maxAttempts) {
+                    throw new APIException("The cart was changed by another request, please try again");
+                }
+                meterRegistry.counter("cart.update.retries", "operation", operation).increment();
+                pause(attempt);
+            }
+        }
+    }
+
+    private void pause(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new APIException("The cart was changed by another request, please try again");
+        }
+    }
+}
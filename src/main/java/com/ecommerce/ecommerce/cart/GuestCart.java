@@ -0,0 +1,7 @@
+package com.ecommerce.ecommerce.cart;
+
+import com.ecommerce.ecommerce.payload.CartDTO;
+
+//A guest cart after a change: the token to hand back to the client and the cart it describes
+public record GuestCart(String token, CartDTO cart) {
+}
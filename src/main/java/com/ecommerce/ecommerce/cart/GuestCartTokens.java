@@ -0,0 +1,165 @@
+package com.ecommerce.ecommerce.cart;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+//Guest carts live in the client as a signed token instead of database rows: a version byte, the issue time, the line
+//count, then product id / quantity pairs as varints with ascending ids delta-encoded, followed by a truncated
+//HMAC-SHA256 tag, all base64url. Prices are never in the token, they are looked up whenever the cart is read.
+@Component
+public class GuestCartTokens {
+    private static final Logger logger = LoggerFactory.getLogger(GuestCartTokens.class);
+    private static final byte VERSION = 1;
+    private static final int TAG_BYTES = 16;
+    //keeps these tags apart from anything else signed with the same secret
+    private static final byte[] CONTEXT = "guest-cart".getBytes(StandardCharsets.UTF_8);
+
+    @Value("${cart.guest.secret:${spring.app.jwtSecret}}")
+    private String secret;
+
+    @Value("${cart.guest.cookie-name:guestCart}")
+    private String cookieName;
+
+    @Value("${cart.guest.max-age-seconds:604800}")
+    private long maxAgeSeconds;
+
+    @Value("${cart.guest.max-lines:50}")
+    private int maxLines;
+
+    private SecretKeySpec key;
+
+    @PostConstruct
+    public void init() {
+        key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    public ResponseCookie generateCookie(String token) {
+        return ResponseCookie.from(cookieName, token)
+                .path("/api")
+                .maxAge(maxAgeSeconds)
+                .httpOnly(true)
+                .sameSite("Lax")
+                .build();
+    }
+
+    public ResponseCookie clearCookie() {
+        return ResponseCookie.from(cookieName, "")
+                .path("/api")
+                .maxAge(0)
+                .build();
+    }
+
+    public String encode(SortedMap<Long, Integer> lines) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + lines.size() * 4);
+        out.write(VERSION);
+        writeVarint(out, Instant.now().getEpochSecond());
+        writeVarint(out, lines.size());
+        long previousId = 0;
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            writeVarint(out, line.getKey() - previousId);
+            writeVarint(out, line.getValue());
+            previousId = line.getKey();
+        }
+        byte[] payload = out.toByteArray();
+        byte[] token = Arrays.copyOf(payload, payload.length + TAG_BYTES);
+        System.arraycopy(tag(payload), 0, token, payload.length, TAG_BYTES);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    //product id -> quantity; a missing, tampered, expired or malformed token is an empty cart
+    public SortedMap<Long, Integer> decode(String token) {
+        SortedMap<Long, Integer> lines = new TreeMap<>();
+        if (token == null || token.isEmpty()) {
+            return lines;
+        }
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(token);
+            if (bytes.length <= TAG_BYTES) {
+                return lines;
+            }
+            byte[] payload = Arrays.copyOf(bytes, bytes.length - TAG_BYTES);
+            byte[] tag = Arrays.copyOfRange(bytes, payload.length, bytes.length);
+            if (!MessageDigest.isEqual(tag, tag(payload))) {
+                logger.debug("Ignoring guest cart token with a bad signature");
+                return lines;
+            }
+            ByteBuffer in = ByteBuffer.wrap(payload);
+            if (in.get() != VERSION) {
+                return lines;
+            }
+            long age = Instant.now().getEpochSecond() - readVarint(in);
+            int count = (int) readVarint(in);
+            if (age > maxAgeSeconds || count > maxLines) {
+                return lines;
+            }
+            long productId = 0;
+            for (int i = 0; i < count; i++) {
+                long delta = readVarint(in);
+                long quantity = readVarint(in);
+                if ((delta == 0 && i > 0) || quantity <= 0 || quantity > Integer.MAX_VALUE) {
+                    lines.clear();
+                    return lines;
+                }
+                productId += delta;
+                lines.put(productId, (int) quantity);
+            }
+            if (in.hasRemaining()) {
+                lines.clear();
+            }
+            return lines;
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            lines.clear();
+            return lines;
+        }
+    }
+
+    private byte[] tag(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            mac.update(CONTEXT);
+            return Arrays.copyOf(mac.doFinal(payload), TAG_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
@@ -0,0 +1,7 @@
+package com.ecommerce.ecommerce.cart;
+
+import java.time.Instant;
+
+//A cart past the idle cutoff, and its keyset position for the abandoned-cart sweeper
+public record IdleCart(Long cartId, Instant updatedAt) {
+}
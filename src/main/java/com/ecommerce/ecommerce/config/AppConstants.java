@@ -7,4 +7,10 @@ public class AppConstants {
     public static final String SORT_ORDER = "asc";
     public static final String SORT_PRODUCTS_BY = "productId";
     public static final String SORT_DIR = "asc";
+    public static final String SORT_RELEVANCE = "relevance";
+    public static final String INCLUDE_COUNT = "true";
+    public static final String INCLUDE_FACETS = "false";
+    public static final String SUGGESTION_LIMIT = "8";
+    public static final String TRENDING_LIMIT = "10";
+    public static final String RECOMMENDATION_LIMIT = "6";
 }
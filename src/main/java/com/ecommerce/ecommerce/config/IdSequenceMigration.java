@@ -0,0 +1,77 @@
+package com.ecommerce.ecommerce.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+//Carts, cart items, orders, order items, payments and addresses used to get AUTO_INCREMENT ids. Their pooled
+//generators now read from {table}_seq tables, which ddl-auto creates starting at 1, so each one is moved past the
+//highest id already in its table before anything is inserted. It runs on every start and only moves a counter forward.
+@Component
+public class IdSequenceMigration {
+    private static final Logger logger = LoggerFactory.getLogger(IdSequenceMigration.class);
+    //a pooled generator hands out the block that ends at the stored value, so that value has to clear the highest id
+    //by a whole block; matches allocationSize on the entities
+    private static final int ALLOCATION_SIZE = 50;
+    private static final List<IdTable> TABLES = List.of(
+            new IdTable("carts", "cart_id", "carts_seq"),
+            new IdTable("cart_items", "cart_item_id", "cart_items_seq"),
+            new IdTable("orders", "id", "orders_seq"),
+            new IdTable("order_items", "order_item_id", "order_items_seq"),
+            new IdTable("payments", "payment_id", "payments_seq"),
+            new IdTable("addresses", "address_id", "addresses_seq"));
+
+    //injected so the schema update has run before init
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @PostConstruct
+    public void init() {
+        //databases with real sequences get them created together with their tables, only the MySQL table emulation
+        //can start behind existing rows
+        if (entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect()
+                .getSequenceSupport().supportsSequences()) {
+            return;
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (IdTable table : TABLES) {
+            transactionTemplate.executeWithoutResult(status -> advance(table));
+        }
+    }
+
+    private void advance(IdTable table) {
+        long maxId = ((Number) entityManager.createNativeQuery(
+                "SELECT COALESCE(MAX(" + table.idColumn() + "), 0) FROM " + table.name()).getSingleResult()).longValue();
+        if (maxId == 0) {
+            return;
+        }
+        long nextValue = maxId + ALLOCATION_SIZE;
+        int updated = entityManager.createNativeQuery(
+                        "UPDATE " + table.sequenceTable() + " SET next_val = ?1 WHERE next_val < ?2")
+                .setParameter(1, nextValue)
+                .setParameter(2, nextValue)
+                .executeUpdate();
+        if (updated > 0) {
+            logger.info("Moved {} to {} past the existing ids of {}", table.sequenceTable(), nextValue, table.name());
+        }
+    }
+
+    private record IdTable(String name, String idColumn, String sequenceTable) {
+    }
+}
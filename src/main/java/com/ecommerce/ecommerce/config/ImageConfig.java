@@ -0,0 +1,26 @@
+package com.ecommerce.ecommerce.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ImageConfig {
+
+    //decodes and scales uploaded images off the request thread; a full queue makes the uploader
+    //generate its own thumbnails instead of dropping them
+    @Bean
+    public ThreadPoolTaskExecutor thumbnailExecutor(@Value("${image.thumbnail.threads:2}") int threads,
+                                                    @Value("${image.thumbnail.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("thumbnail-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -1,8 +1,10 @@
 package com.ecommerce.ecommerce.controller;
 
+import com.ecommerce.ecommerce.cart.GuestCartTokens;
 import com.ecommerce.ecommerce.model.AppRole;
 import com.ecommerce.ecommerce.model.Role;
 import com.ecommerce.ecommerce.model.User;
+import com.ecommerce.ecommerce.payload.CartItemDTO;
 import com.ecommerce.ecommerce.repositories.RoleRepository;
 import com.ecommerce.ecommerce.repositories.UserRepository;
 import com.ecommerce.ecommerce.security.jwt.JwtUtils;
@@ -11,7 +13,11 @@ import com.ecommerce.ecommerce.security.request.SignupRequest;
 import com.ecommerce.ecommerce.security.response.MessageResponse;
 import com.ecommerce.ecommerce.security.response.UserInfoResponse;
 import com.ecommerce.ecommerce.security.services.UserDetailsImpl;
+import com.ecommerce.ecommerce.service.CartService;
+import com.ecommerce.ecommerce.service.GuestCartService;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -31,6 +37,7 @@ import java.util.stream.Collectors;
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
+    private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
     @Autowired
     private JwtUtils jwtUtils;
@@ -47,8 +54,18 @@ public class AuthController {
     @Autowired
     PasswordEncoder encoder;
 
+    @Autowired
+    CartService cartService;
+
+    @Autowired
+    GuestCartService guestCartService;
+
+    @Autowired
+    GuestCartTokens guestCartTokens;
+
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@RequestBody LoginRequest loginRequest,
+                                              @CookieValue(name = "${cart.guest.cookie-name:guestCart}", required = false) String guestCartToken) {
         Authentication authentication;
         try {
             authentication = authenticationManager
@@ -74,7 +91,23 @@ public class AuthController {
                 userDetails.getUsername(), roles, jwtCookie.toString());
 
 
-        return ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, jwtCookie.toString()).body(response);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, jwtCookie.toString());
+
+        //the guest cart moves into the user's cart and its cookie is dropped. A failed merge does not fail the sign-in,
+        //the cookie is kept so the next sign-in merges the cart again
+        if (guestCartToken != null) {
+            try {
+                List<CartItemDTO> guestCartItems = guestCartService.getCartItems(guestCartToken);
+                if (!guestCartItems.isEmpty()) {
+                    cartService.mergeGuestCart(guestCartItems);
+                }
+                builder.header(HttpHeaders.SET_COOKIE, guestCartTokens.clearCookie().toString());
+            } catch (RuntimeException e) {
+                logger.warn("Could not merge the guest cart of {}", userDetails.getUsername(), e);
+            }
+        }
+
+        return builder.body(response);
     }
 
     @PostMapping("/signup")
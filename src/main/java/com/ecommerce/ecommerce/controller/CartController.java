@@ -1,16 +1,23 @@
 package com.ecommerce.ecommerce.controller;
 
-import com.ecommerce.ecommerce.model.Cart;
+import com.ecommerce.ecommerce.config.AppConstants;
 import com.ecommerce.ecommerce.payload.CartDTO;
 import com.ecommerce.ecommerce.payload.CartItemDTO;
+import com.ecommerce.ecommerce.payload.CartResponse;
 import com.ecommerce.ecommerce.repositories.CartRepository;
+import com.ecommerce.ecommerce.service.CartExportService;
 import com.ecommerce.ecommerce.service.CartService;
+import com.ecommerce.ecommerce.service.ProductImportServiceImpl;
 import com.ecommerce.ecommerce.util.AuthUtil;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -25,10 +32,13 @@ public class CartController {
     @Autowired
     CartRepository cartRepository;
 
+    @Autowired
+    CartExportService cartExportService;
+
     @PostMapping("/cart/create")
-    public ResponseEntity<String> createOrUpdateCart(@RequestBody List<CartItemDTO> cartItems){
-        String response = cartService.createOrUpdateCartWithItems(cartItems);
-        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    public ResponseEntity<CartDTO> createOrUpdateCart(@RequestBody List<CartItemDTO> cartItems){
+        CartDTO cartDTO = cartService.createOrUpdateCartWithItems(cartItems);
+        return new ResponseEntity<CartDTO>(cartDTO, HttpStatus.CREATED);
     }
 
     @PostMapping("/carts/products/{productId}/quantity/{quantity}")
@@ -37,17 +47,39 @@ public class CartController {
         return new ResponseEntity<CartDTO>(cartDTO,HttpStatus.CREATED);
     }
 
+    //one page of carts at a time, like /admin/carts; the whole table only goes out through /admin/carts/export
     @GetMapping("/carts")
-    public ResponseEntity<List<CartDTO>> getCarts() {
-        List<CartDTO> cartDTOs = cartService.getCarts();
-        return new ResponseEntity<List<CartDTO>>(cartDTOs, HttpStatus.FOUND);
+    public ResponseEntity<CartResponse> getCarts(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize) {
+        CartResponse cartResponse = cartExportService.getCartsAfter(cursor, pageSize);
+        return new ResponseEntity<CartResponse>(cartResponse, HttpStatus.FOUND);
+    }
+
+    @GetMapping("/admin/carts")
+    public ResponseEntity<CartResponse> getCartsPage(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize) {
+        CartResponse cartResponse = cartExportService.getCartsAfter(cursor, pageSize);
+        return new ResponseEntity<CartResponse>(cartResponse, HttpStatus.OK);
+    }
+
+    //every cart, written to the response while it is read: format=ndjson (one cart per line) or csv (one row per line)
+    @GetMapping("/admin/carts/export")
+    public void exportCarts(@RequestParam(name = "format", defaultValue = "ndjson") String format,
+                            HttpServletResponse response) throws IOException {
+        boolean csv = format.equalsIgnoreCase("csv");
+        MediaType mediaType = csv ? ProductImportServiceImpl.TEXT_CSV : MediaType.APPLICATION_NDJSON;
+        response.setContentType(mediaType.toString() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"carts." + (csv ? "csv" : "ndjson") + "\"");
+        cartExportService.exportCarts(response.getOutputStream(), mediaType);
     }
 
     @GetMapping("/carts/users/cart")
     public ResponseEntity<CartDTO> getCartByUserId() {
         String emailId = authUtil.loggedInUserEmail();
-        Cart cart = cartRepository.findCartByEmail(emailId);
-        Long cartId = cart.getCartId();
+        Long cartId = cartRepository.findCartIdByEmail(emailId);
         CartDTO cartDTO = cartService.getCart(emailId, cartId);
         return new ResponseEntity<CartDTO>(cartDTO, HttpStatus.OK);
     }
@@ -1,15 +1,18 @@
 package com.ecommerce.ecommerce.controller;
 
+import com.ecommerce.ecommerce.cache.CatalogVersions;
 import com.ecommerce.ecommerce.config.AppConstants;
 import com.ecommerce.ecommerce.model.Category;
 import com.ecommerce.ecommerce.payload.CategoryDTO;
 import com.ecommerce.ecommerce.payload.CategoryResponse;
 import com.ecommerce.ecommerce.service.CategoryService;
+import com.ecommerce.ecommerce.util.ConditionalResponses;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -20,16 +23,28 @@ public class CategoryController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private CatalogVersions catalogVersions;
+
     @GetMapping("/public/categories")
     //@RequestMapping(value = "/public/categories", method = RequestMethod.GET)
     public ResponseEntity<CategoryResponse> getAllCategories(
             @RequestParam(name = "pageNumber", defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
             @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
             @RequestParam(name = "sortBy", defaultValue = AppConstants.SORT_CATEGORIES_BY, required = false) String sortBy,
-            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_ORDER, required = false) String sortOrder
+            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_ORDER, required = false) String sortOrder,
+            //cursor paging: pass an empty cursor for the first page, then the nextCursor of each response
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "includeCount", defaultValue = AppConstants.INCLUDE_COUNT, required = false) boolean includeCount,
+            WebRequest webRequest
     ){
-        CategoryResponse categoryResponse = categoryService.getAllCategories(pageNumber, pageSize, sortBy, sortOrder);
-        return new ResponseEntity<>(categoryResponse, HttpStatus.OK);
+        String eTag = catalogVersions.catalogETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return ConditionalResponses.notModified(eTag);
+        }
+        CategoryResponse categoryResponse = categoryService.getAllCategories(pageNumber, pageSize, sortBy, sortOrder,
+                cursor, includeCount);
+        return ConditionalResponses.ok(eTag, categoryResponse);
     }
 
     @PostMapping("/public/categories")
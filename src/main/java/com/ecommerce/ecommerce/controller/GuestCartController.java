@@ -0,0 +1,60 @@
+package com.ecommerce.ecommerce.controller;
+
+import com.ecommerce.ecommerce.cart.GuestCart;
+import com.ecommerce.ecommerce.cart.GuestCartTokens;
+import com.ecommerce.ecommerce.payload.CartDTO;
+import com.ecommerce.ecommerce.service.GuestCartService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+//Carts of shoppers who have not signed in, carried in the guest cart cookie; sign-in merges them into the user's cart
+@RestController
+@RequestMapping("/api/public/guest-cart")
+public class GuestCartController {
+
+    @Autowired
+    private GuestCartService guestCartService;
+
+    @Autowired
+    private GuestCartTokens guestCartTokens;
+
+    @GetMapping
+    public ResponseEntity<CartDTO> getGuestCart(
+            @CookieValue(name = "${cart.guest.cookie-name:guestCart}", required = false) String token) {
+        return new ResponseEntity<CartDTO>(guestCartService.getCart(token), HttpStatus.OK);
+    }
+
+    @PostMapping("/products/{productId}/quantity/{quantity}")
+    public ResponseEntity<CartDTO> addProductToGuestCart(
+            @CookieValue(name = "${cart.guest.cookie-name:guestCart}", required = false) String token,
+            @PathVariable Long productId,
+            @PathVariable Integer quantity) {
+        return withCookie(guestCartService.addProductToCart(token, productId, quantity), HttpStatus.CREATED);
+    }
+
+    @PutMapping("/products/{productId}/quantity/{operation}")
+    public ResponseEntity<CartDTO> updateGuestCartProduct(
+            @CookieValue(name = "${cart.guest.cookie-name:guestCart}", required = false) String token,
+            @PathVariable Long productId,
+            @PathVariable String operation) {
+        GuestCart guestCart = guestCartService.updateProductQuantityInCart(token, productId,
+                operation.equalsIgnoreCase("delete") ? -1 : 1);
+        return withCookie(guestCart, HttpStatus.OK);
+    }
+
+    @DeleteMapping("/products/{productId}")
+    public ResponseEntity<CartDTO> deleteProductFromGuestCart(
+            @CookieValue(name = "${cart.guest.cookie-name:guestCart}", required = false) String token,
+            @PathVariable Long productId) {
+        return withCookie(guestCartService.deleteProductFromCart(token, productId), HttpStatus.OK);
+    }
+
+    private ResponseEntity<CartDTO> withCookie(GuestCart guestCart, HttpStatus status) {
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.SET_COOKIE, guestCartTokens.generateCookie(guestCart.token()).toString())
+                .body(guestCart.cart());
+    }
+}
@@ -0,0 +1,181 @@
+package com.ecommerce.ecommerce.controller;
+
+import com.ecommerce.ecommerce.cache.ImageBytesCache;
+import com.ecommerce.ecommerce.util.ByteRange;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Serves uploaded images and their thumbnails. Content-addressed names never change content, so they are
+//cached by clients for a year without revalidation; small hot images come from the off-heap cache and
+//everything else goes from the file to the socket with sendfile or FileChannel.transferTo.
+@RestController
+public class ImageController {
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("([0-9a-f]{64})(\\.[a-z0-9]+)?");
+    private static final String IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable()
+            .getHeaderValue();
+    private static final String REVALIDATE = CacheControl.noCache().getHeaderValue();
+    //Tomcat hands files announced through these request attributes to the kernel after the response headers
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Value("${project.image}")
+    private String imageDirectory;
+
+    @Autowired
+    private ImageBytesCache imageBytesCache;
+
+    @GetMapping({"/images/{name}", "/images/{size:\\d+}/{name}"})
+    public void serveImage(@PathVariable(name = "size", required = false) String size,
+                           @PathVariable(name = "name") String name,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        if (!FILE_NAME.matcher(name).matches()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String key = size == null ? name : size + "/" + name;
+        Path file = Paths.get(imageDirectory).resolve(key);
+        Matcher contentAddressed = CONTENT_ADDRESSED.matcher(name);
+        boolean immutable = contentAddressed.matches();
+
+        //immutable files need no stat when they are cached
+        ImageBytesCache.Entry cached = imageBytesCache.get(key);
+        long length;
+        long lastModified = 0;
+        if (immutable && cached != null) {
+            length = cached.length();
+        } else {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                imageBytesCache.invalidate(key);
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            if (!attributes.isRegularFile()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            length = attributes.size();
+            lastModified = attributes.lastModifiedTime().toMillis();
+            if (cached != null && (cached.lastModified() != lastModified || cached.length() != length)) {
+                imageBytesCache.invalidate(key);
+                cached = null;
+            }
+            if (!immutable) {
+                response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+            }
+            if (cached == null) {
+                cached = imageBytesCache.load(key, file, length, lastModified);
+            }
+        }
+        String eTag = immutable
+                ? "\"" + contentAddressed.group(1) + (size == null ? "" : "-" + size) + "\""
+                : "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        //a range only applies to the representation the client already has part of. If-Range compares strongly, a weak
+        //size-mtime tag cannot vouch for the bytes, so it gets the full body
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        ByteRange range = null;
+        if (ifRange == null || (!eTag.startsWith("W/") && ifRange.equals(eTag))) {
+            try {
+                range = ByteRange.parse(request.getHeader(HttpHeaders.RANGE), length);
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+        long start = range == null ? 0 : range.start();
+        long count = range == null ? length : range.length();
+        if (range != null) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.contentRange(length));
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(count);
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+
+        if (cached != null) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            ByteBuffer bytes = cached.slice(start, count);
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        } else if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().normalize().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+        } else {
+            transfer(file, start, count, response);
+        }
+    }
+
+    private static void transfer(Path file, long start, long count, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    //weak comparison as If-None-Match requires
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(opaque));
+    }
+}
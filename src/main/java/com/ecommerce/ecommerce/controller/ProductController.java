@@ -1,17 +1,29 @@
 package com.ecommerce.ecommerce.controller;
 
+import com.ecommerce.ecommerce.cache.CatalogVersions;
+import com.ecommerce.ecommerce.cache.ResponseBytesCache;
 import com.ecommerce.ecommerce.config.AppConstants;
+import com.ecommerce.ecommerce.payload.APIResponse;
 import com.ecommerce.ecommerce.payload.ProductDTO;
+import com.ecommerce.ecommerce.payload.ProductImportResponse;
 import com.ecommerce.ecommerce.payload.ProductResponse;
+import com.ecommerce.ecommerce.payload.SuggestionDTO;
+import com.ecommerce.ecommerce.search.PopularityTracker;
+import com.ecommerce.ecommerce.service.ProductImportService;
 import com.ecommerce.ecommerce.service.ProductService;
+import com.ecommerce.ecommerce.util.ConditionalResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api")
@@ -20,6 +32,18 @@ public class ProductController {
     @Autowired
     ProductService productService;
 
+    @Autowired
+    ProductImportService productImportService;
+
+    @Autowired
+    CatalogVersions catalogVersions;
+
+    @Autowired
+    ResponseBytesCache responseBytesCache;
+
+    @Autowired
+    PopularityTracker popularityTracker;
+
     @PostMapping("/admin/categories/{categoryId}/product")
     public ResponseEntity<ProductDTO> addProduct(
             @Valid @PathVariable Long categoryId,
@@ -28,29 +52,54 @@ public class ProductController {
         ProductDTO addedProduct = productService.addProduct(categoryId, productDTO);
         return new ResponseEntity<>(addedProduct, HttpStatus.CREATED);
     }
+
+    //streams a text/csv (with header row) or application/x-ndjson body, categoryId is the default for rows without one
+    @PostMapping(value = "/admin/products/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ProductImportResponse> importProducts(
+            @RequestParam(name = "categoryId", required = false) Long categoryId,
+            HttpServletRequest request
+    ) throws IOException {
+        ProductImportResponse importResponse = productImportService.importProducts(request.getInputStream(),
+                MediaType.parseMediaType(request.getContentType()), categoryId);
+        return new ResponseEntity<>(importResponse, HttpStatus.OK);
+    }
+
+    //catalog reads answer If-None-Match from the catalog version alone, before any query or serialization,
+    //the two listing endpoints send their body from the encoded bytes cache
     @GetMapping("public/products")
-    public ResponseEntity<ProductResponse> getAllProducts(
+    public ResponseEntity<byte[]> getAllProducts(
             @RequestParam(name = "keyword", required = false) String keyword,
             @RequestParam(name = "category", required = false) String category,
             @RequestParam(name = "pageNumber", defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
             @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
-            @RequestParam(name = "sortBy", defaultValue = AppConstants.SORT_PRODUCTS_BY, required = false) String sortBy,
-            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder
+            //keyword searches are ranked by relevance unless a sort field is given
+            @RequestParam(name = "sortBy", required = false) String sortBy,
+            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder,
+            //cursor paging: pass an empty cursor for the first page, then the nextCursor of each response
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "includeCount", defaultValue = AppConstants.INCLUDE_COUNT, required = false) boolean includeCount,
+            @RequestParam(name = "includeFacets", defaultValue = AppConstants.INCLUDE_FACETS, required = false) boolean includeFacets,
+            HttpServletRequest request
     ) {
-        ProductResponse productResponse = productService.getAllProducts(pageNumber, pageSize, sortBy, sortOrder, keyword, category);
-        return new ResponseEntity<>(productResponse, HttpStatus.OK);
+        String eTag = catalogVersions.catalogETag();
+        return responseBytesCache.respond(request, eTag, () -> productService.getAllProducts(pageNumber,
+                pageSize, sortBy, sortOrder, keyword, category, cursor, includeCount, includeFacets));
     }
 
     @GetMapping("public/categories/{categoryId}/products")
-    public ResponseEntity<ProductResponse> getAllProductsByCategory(
+    public ResponseEntity<byte[]> getAllProductsByCategory(
             @PathVariable Long categoryId,
             @RequestParam(name = "pageNumber", defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
             @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
             @RequestParam(name = "sortBy", defaultValue = AppConstants.SORT_PRODUCTS_BY, required = false) String sortBy,
-            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder
+            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "includeCount", defaultValue = AppConstants.INCLUDE_COUNT, required = false) boolean includeCount,
+            HttpServletRequest request
     ) {
-        ProductResponse productResponse = productService.getAllProductsByCategory(categoryId, pageNumber, pageSize, sortBy, sortOrder);
-        return new ResponseEntity<>(productResponse, HttpStatus.OK);
+        String eTag = catalogVersions.categoryETag(categoryId);
+        return responseBytesCache.respond(request, eTag, () -> productService.getAllProductsByCategory(
+                categoryId, pageNumber, pageSize, sortBy, sortOrder, cursor, includeCount));
     }
 
     @GetMapping("public/products/keyword/{keyword}")
@@ -58,11 +107,60 @@ public class ProductController {
             @PathVariable String keyword,
             @RequestParam(name = "pageNumber", defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
             @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
-            @RequestParam(name = "sortBy", defaultValue = AppConstants.SORT_PRODUCTS_BY, required = false) String sortBy,
-            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder
+            @RequestParam(name = "sortBy", defaultValue = AppConstants.SORT_RELEVANCE, required = false) String sortBy,
+            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder,
+            WebRequest webRequest
     ) {
+        String eTag = catalogVersions.catalogETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return ConditionalResponses.notModified(eTag);
+        }
         ProductResponse productResponse = productService.getAllProductsByKeyword(keyword, pageNumber, pageSize, sortBy, sortOrder);
-        return new ResponseEntity<>(productResponse, HttpStatus.OK);
+        return ConditionalResponses.ok(eTag, productResponse);
+    }
+
+    //typeahead for the search box, served from memory
+    @GetMapping("public/products/suggest")
+    public ResponseEntity<List<SuggestionDTO>> suggest(
+            @RequestParam(name = "prefix") String prefix,
+            @RequestParam(name = "limit", defaultValue = AppConstants.SUGGESTION_LIMIT, required = false) Integer limit
+    ) {
+        List<SuggestionDTO> suggestions = productService.suggest(prefix, limit);
+        return new ResponseEntity<>(suggestions, HttpStatus.OK);
+    }
+
+    //most viewed and added to cart recently, overall or within one category, served from memory
+    @GetMapping("public/products/trending")
+    public ResponseEntity<List<ProductDTO>> getTrendingProducts(
+            @RequestParam(name = "categoryId", required = false) Long categoryId,
+            @RequestParam(name = "limit", defaultValue = AppConstants.TRENDING_LIMIT, required = false) Integer limit
+    ) {
+        List<ProductDTO> trendingProducts = productService.getTrendingProducts(categoryId, limit);
+        return new ResponseEntity<>(trendingProducts, HttpStatus.OK);
+    }
+
+    //products most often bought in the same orders as this one
+    @GetMapping("public/products/{productId}/recommendations")
+    public ResponseEntity<List<ProductDTO>> getRecommendations(
+            @PathVariable Long productId,
+            @RequestParam(name = "limit", defaultValue = AppConstants.RECOMMENDATION_LIMIT, required = false) Integer limit
+    ) {
+        List<ProductDTO> recommendations = productService.getRecommendations(productId, limit);
+        return new ResponseEntity<>(recommendations, HttpStatus.OK);
+    }
+
+    //recomputes the recommendations from the full order history, for recovery
+    @PostMapping("/admin/recommendations/rebuild")
+    public ResponseEntity<APIResponse> rebuildRecommendations() {
+        productService.rebuildRecommendations();
+        return new ResponseEntity<>(new APIResponse("Recommendations rebuilt from order history", true), HttpStatus.OK);
+    }
+
+    //the storefront reports product page views here, they only bump an in-memory counter
+    @PostMapping("public/products/{productId}/views")
+    public ResponseEntity<Void> recordProductView(@PathVariable Long productId) {
+        popularityTracker.recordView(productId);
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
     }
 
     @PutMapping("/products/{productId}")
@@ -0,0 +1,13 @@
+package com.ecommerce.ecommerce.events;
+
+//@Order of the after-commit listeners on product and category changes. The in-memory indexes apply a change first,
+//then cached pages are dropped, then the catalog versions move: a read reloading a dropped page already sees the
+//new data, and no page can be cached under an ETag newer than the data it holds.
+public final class CatalogListenerOrder {
+    public static final int INDEXES = 0;
+    public static final int CACHE = 100;
+    public static final int VERSIONS = 200;
+
+    private CatalogListenerOrder() {
+    }
+}
@@ -0,0 +1,20 @@
+package com.ecommerce.ecommerce.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//Published by the category write paths, categoryName is the name before the change
+@Getter
+@AllArgsConstructor
+public class CategoryChangedEvent {
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Long categoryId;
+    private final String categoryName;
+    private final String newCategoryName;
+    private final ChangeType changeType;
+}
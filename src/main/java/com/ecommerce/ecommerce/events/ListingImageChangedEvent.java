@@ -0,0 +1,11 @@
+package com.ecommerce.ecommerce.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//Published by the file service when an image gets its listing-size variant, so listings showing it can link the variant
+@Getter
+@AllArgsConstructor
+public class ListingImageChangedEvent {
+    private final String imageName;
+}
@@ -0,0 +1,14 @@
+package com.ecommerce.ecommerce.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+//Published by placeOrder so listeners can learn from the products bought together once the order commits
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+    private final Long orderId;
+    private final List<Long> productIds;
+}
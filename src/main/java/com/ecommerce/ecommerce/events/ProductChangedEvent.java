@@ -0,0 +1,40 @@
+package com.ecommerce.ecommerce.events;
+
+import com.ecommerce.ecommerce.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+//Published by the product write paths so in-memory catalog structures can follow the database
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED,
+        IMAGE_UPDATED,
+        STOCK_UPDATED
+    }
+
+    private final Long productId;
+    private final Long categoryId;
+    private final String categoryName;
+    private final ChangeType changeType;
+    //state after the change, null when the product was deleted
+    private final Product product;
+    //product properties modified by an UPDATED change
+    private final Set<String> changedFields;
+
+    public static ProductChangedEvent of(Product product, ChangeType changeType) {
+        return of(product, changeType, Set.of());
+    }
+
+    public static ProductChangedEvent of(Product product, ChangeType changeType, Set<String> changedFields) {
+        Long categoryId = product.getCategory() != null ? product.getCategory().getCategoryId() : null;
+        String categoryName = product.getCategory() != null ? product.getCategory().getCategoryName() : null;
+        return new ProductChangedEvent(product.getProductId(), categoryId, categoryName, changeType,
+                changeType == ChangeType.DELETED ? null : product, changedFields);
+    }
+}
@@ -0,0 +1,32 @@
+package com.ecommerce.ecommerce.events;
+
+import com.ecommerce.ecommerce.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//Published once per committed bulk import chunk instead of a CREATED ProductChangedEvent per row, so caches and
+//versions move once for the chunk while the indexes still add every product
+@Getter
+@AllArgsConstructor
+public class ProductsImportedEvent {
+    private final List<Product> products;
+
+    public Set<Long> getCategoryIds() {
+        return products.stream()
+                .map(product -> product.getCategory() != null ? product.getCategory().getCategoryId() : null)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    public Set<String> getCategoryNames() {
+        return products.stream()
+                .map(product -> product.getCategory() != null ? product.getCategory().getCategoryName() : null)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+}
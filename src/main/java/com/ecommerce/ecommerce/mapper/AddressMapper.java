@@ -0,0 +1,20 @@
+package com.ecommerce.ecommerce.mapper;
+
+import com.ecommerce.ecommerce.model.Address;
+import com.ecommerce.ecommerce.payload.AddressDTO;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface AddressMapper {
+
+    AddressDTO toAddressDTO(Address address);
+
+    @Mapping(target = "user", ignore = true)
+    Address toAddress(AddressDTO addressDTO);
+}
@@ -0,0 +1,29 @@
+package com.ecommerce.ecommerce.mapper;
+
+import com.ecommerce.ecommerce.model.Cart;
+import com.ecommerce.ecommerce.model.CartItem;
+import com.ecommerce.ecommerce.payload.CartDTO;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+import java.util.List;
+
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        unmappedTargetPolicy = ReportingPolicy.ERROR,
+        uses = ProductMapper.class)
+public interface CartMapper {
+
+    //every cart line becomes a ProductDTO carrying the line quantity
+    @Mapping(target = "products", source = "cartItems")
+    CartDTO toCartDTO(Cart cart);
+
+    //a cart with the lines it was just given, for when its own collection is not reloaded
+    @Mapping(target = "cartId", source = "cart.cartId")
+    @Mapping(target = "totalPrice", source = "cart.totalPrice")
+    @Mapping(target = "products", source = "cartItems")
+    CartDTO toCartDTO(Cart cart, List<CartItem> cartItems);
+}
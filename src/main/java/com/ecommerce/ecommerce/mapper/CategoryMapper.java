@@ -0,0 +1,22 @@
+package com.ecommerce.ecommerce.mapper;
+
+import com.ecommerce.ecommerce.model.Category;
+import com.ecommerce.ecommerce.payload.CategoryDTO;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface CategoryMapper {
+
+    @Mapping(target = "id", source = "categoryId")
+    CategoryDTO toCategoryDTO(Category category);
+
+    @Mapping(target = "categoryId", source = "id")
+    @Mapping(target = "products", ignore = true)
+    Category toCategory(CategoryDTO categoryDTO);
+}
@@ -0,0 +1,28 @@
+package com.ecommerce.ecommerce.mapper;
+
+import com.ecommerce.ecommerce.model.Order;
+import com.ecommerce.ecommerce.model.OrderItem;
+import com.ecommerce.ecommerce.model.Payment;
+import com.ecommerce.ecommerce.payload.OrderDTO;
+import com.ecommerce.ecommerce.payload.OrderItemDTO;
+import com.ecommerce.ecommerce.payload.PaymentDTO;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        unmappedTargetPolicy = ReportingPolicy.ERROR,
+        uses = ProductMapper.class)
+public interface OrderMapper {
+
+    @Mapping(target = "orderId", source = "id")
+    @Mapping(target = "addressId", source = "address.addressId")
+    OrderDTO toOrderDTO(Order order);
+
+    OrderItemDTO toOrderItemDTO(OrderItem orderItem);
+
+    PaymentDTO toPaymentDTO(Payment payment);
+}
@@ -0,0 +1,37 @@
+package com.ecommerce.ecommerce.mapper;
+
+import com.ecommerce.ecommerce.model.CartItem;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.payload.ProductDTO;
+import com.ecommerce.ecommerce.repositories.ProductView;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface ProductMapper {
+
+    ProductDTO toProductDTO(Product product);
+
+    ProductDTO toProductDTO(ProductView productView);
+
+    @Mapping(target = "category", ignore = true)
+    @Mapping(target = "user", ignore = true)
+    @Mapping(target = "products", ignore = true)
+    Product toProduct(ProductDTO productDTO);
+
+    //a product as shown inside a cart: catalog fields of the product, quantity of the cart line
+    @Mapping(target = "productId", source = "product.productId")
+    @Mapping(target = "productName", source = "product.productName")
+    @Mapping(target = "image", source = "product.image")
+    @Mapping(target = "description", source = "product.description")
+    @Mapping(target = "price", source = "product.price")
+    @Mapping(target = "discount", source = "product.discount")
+    @Mapping(target = "specialPrice", source = "product.specialPrice")
+    @Mapping(target = "quantity", source = "quantity")
+    ProductDTO toCartProductDTO(CartItem cartItem);
+}
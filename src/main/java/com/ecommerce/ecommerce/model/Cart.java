@@ -5,19 +5,27 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Data
-@Table(name="carts")
+@Table(name="carts", indexes = @Index(name = "idx_carts_updated_at", columnList = "updated_at, cart_id"))
+//fetch plan of the cart endpoints: the cart, its lines and their products in one query, everything else left lazy
+@NamedEntityGraph(name = "Cart.itemsWithProducts",
+        attributeNodes = @NamedAttributeNode(value = "cartItems", subgraph = "cartItems"),
+        subgraphs = @NamedSubgraph(name = "cartItems", attributeNodes = @NamedAttributeNode("product")))
 @NoArgsConstructor
 @AllArgsConstructor
 public class Cart {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carts_seq")
+    @SequenceGenerator(name = "carts_seq", sequenceName = "carts_seq", allocationSize = 50)
     private Long cartId;
 
     @OneToOne
@@ -28,4 +36,15 @@ public class Cart {
     private List<CartItem> cartItems = new ArrayList<>();
 
     private Double totalPrice = 0.0;
+
+    //every change to the cart bumps this, in-database increments included, so a stale read-modify-write is
+    //rejected instead of overwriting a concurrent change
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    //last change to the cart; the abandoned-cart sweeper deletes carts idle for longer than cart.sweeper.idle-days
+    @UpdateTimestamp
+    private Instant updatedAt;
 }
@@ -16,7 +16,7 @@ import java.util.List;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "products")
+@Table(name = "products", indexes = @Index(name = "idx_products_image", columnList = "image"))
 @ToString
 public class Product {
     @Id
@@ -41,9 +41,10 @@ public class Product {
     @JoinColumn(name = "seller_id")
     private User user;
 
+    //cart lines holding the product; loading them with every product fanned each cart read out into a query per line
+    @ToString.Exclude
     @OneToMany(mappedBy = "product",
-            cascade = {CascadeType.PERSIST, CascadeType.MERGE},
-            fetch = FetchType.EAGER
+            cascade = {CascadeType.PERSIST, CascadeType.MERGE}
     )
     private List<CartItem> products = new ArrayList<>();
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.ecommerce.ecommerce.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity(name = "product_popularity")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPopularity {
+    @Id
+    private Long productId;
+
+    private long viewCount;
+
+    private long cartAddCount;
+
+    //time-decayed score as of scoredAt
+    private double trendingScore;
+
+    private Instant scoredAt;
+}
@@ -0,0 +1,18 @@
+package com.ecommerce.ecommerce.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartResponse {
+    private List<CartDTO> carts;
+    private Integer pageSize;
+    private boolean lastPage;
+    //continuation token for the next page, null on the last page
+    private String nextCursor;
+}
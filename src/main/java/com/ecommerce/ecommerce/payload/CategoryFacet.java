@@ -0,0 +1,14 @@
+package com.ecommerce.ecommerce.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryFacet {
+    private Long categoryId;
+    private String categoryName;
+    private long count;
+}
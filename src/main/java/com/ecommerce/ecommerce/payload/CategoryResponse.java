@@ -18,4 +18,6 @@ public class CategoryResponse {
     private Integer totalPages;
     private Long totalElements;
     private Boolean lastPage;
+    //continuation token for cursor paging, null on the last page
+    private String nextCursor;
 }
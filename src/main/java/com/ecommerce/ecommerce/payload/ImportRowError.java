@@ -0,0 +1,15 @@
+package com.ecommerce.ecommerce.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRowError {
+    //1-based line number in the uploaded body
+    private long line;
+    private String productName;
+    private String message;
+}
@@ -0,0 +1,16 @@
+package com.ecommerce.ecommerce.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceBucket {
+    //inclusive lower bound on specialPrice
+    private double from;
+    //exclusive upper bound, null for the open-ended last bucket
+    private Double to;
+    private long count;
+}
@@ -0,0 +1,17 @@
+package com.ecommerce.ecommerce.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacets {
+    private List<CategoryFacet> categories;
+    private List<PriceBucket> priceBuckets;
+    private long inStock;
+    private long outOfStock;
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.ecommerce.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportResponse {
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsFailed;
+    private List<ImportRowError> errors = new ArrayList<>();
+    //true when more rows failed than the error report keeps
+    private boolean errorsTruncated;
+    private int batches;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+}
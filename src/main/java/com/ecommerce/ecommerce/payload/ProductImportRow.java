@@ -0,0 +1,20 @@
+package com.ecommerce.ecommerce.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//One record of a bulk product import, either a CSV line or an NDJSON object
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportRow {
+    private String productName;
+    private String description;
+    private String image;
+    private Integer quantity;
+    private Double price;
+    private Double discount;
+    private Long categoryId;
+    private String categoryName;
+}
@@ -16,4 +16,8 @@ public class ProductResponse {
     private Long totalElements;
     private Integer totalPages;
     private boolean lastPage;
+    //continuation token for cursor paging, null on the last page
+    private String nextCursor;
+    //aggregates over the whole result set, only filled when requested
+    private ProductFacets facets;
 }
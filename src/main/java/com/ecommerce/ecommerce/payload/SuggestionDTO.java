@@ -0,0 +1,19 @@
+package com.ecommerce.ecommerce.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO {
+    public enum Type {
+        PRODUCT,
+        CATEGORY
+    }
+
+    private Type type;
+    private Long id;
+    private String text;
+}
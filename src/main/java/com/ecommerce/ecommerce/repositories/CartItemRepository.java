@@ -1,20 +1,40 @@
 package com.ecommerce.ecommerce.repositories;
 
 import com.ecommerce.ecommerce.model.CartItem;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+
 
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+    //the line with its product; the cart is left to the caller, who already has it or its id
+    @EntityGraph(attributePaths = "product", type = EntityGraph.EntityGraphType.FETCH)
     @Query("SELECT ci FROM CartItem ci WHERE ci.product.id = ?1 AND ci.cart.id = ?2")
     CartItem findCartItemByProductIdAndCartId(Long productId, Long cartId);
 
     @Modifying
-    @Query("DELETE FROM CartItem ci WHERE ci.cart.id = ?1 AND ci.product.id = ?2")
+    @Query("DELETE FROM CartItem ci WHERE ci.product.id = ?1 AND ci.cart.id = ?2")
     void deleteCartItemByProductIdAndCartId(Long productId, Long cartId);
 
     @Modifying
     @Query("DELETE FROM CartItem ci WHERE ci.cart.id = ?1")
     void deleteAllByCartId(Long cartId);
+
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.cartId IN ?1")
+    int deleteAllByCartIdIn(Collection<Long> cartIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE CartItem ci SET ci.productPrice = ?2, ci.version = ci.version + 1 " +
+            "WHERE ci.product.productId = ?1 AND ci.productPrice <> ?2")
+    int repriceProduct(Long productId, double newPrice);
+
+    //in-database increment that takes the current price along; refused (0 rows) when it would leave the line empty
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE CartItem ci SET ci.quantity = ci.quantity + ?2, ci.productPrice = ?3, ci.discount = ?4, " +
+            "ci.version = ci.version + 1 WHERE ci.cartItemId = ?1 AND ci.quantity + ?2 > 0")
+    int addQuantity(Long cartItemId, int quantity, double productPrice, double discount);
 }
@@ -1,19 +1,92 @@
 package com.ecommerce.ecommerce.repositories;
 
+import com.ecommerce.ecommerce.cart.IdleCart;
 import com.ecommerce.ecommerce.model.Cart;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT c FROM Cart c WHERE c.user.email = ?1")
     Cart findCartByEmail(String email);
 
+    @Query("SELECT c.cartId FROM Cart c WHERE c.user.email = ?1")
+    Long findCartIdByEmail(String email);
+
+    @EntityGraph(value = "Cart.itemsWithProducts", type = EntityGraph.EntityGraphType.FETCH)
+    @Query("SELECT c FROM Cart c WHERE c.user.email = ?1")
+    Cart findCartWithItemsByEmail(String email);
+
+    @EntityGraph(value = "Cart.itemsWithProducts", type = EntityGraph.EntityGraphType.FETCH)
+    @Query("SELECT c FROM Cart c WHERE c.cartId IN ?1")
+    List<Cart> findAllWithItemsByCartIdIn(Collection<Long> cartIds);
+
+    @Query("SELECT c.cartId FROM Cart c WHERE c.cartId > ?1 ORDER BY c.cartId")
+    List<Long> findCartIdsAfter(Long afterCartId, Pageable pageable);
+
+    //one row per cart line, or a single row without product for an empty cart, in cart order: cartId, totalPrice,
+    //productId, productName, image, description, price, discount, specialPrice, quantity; the MySQL driver streams
+    //the result set for this fetch size
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT c.cartId, c.totalPrice, p.productId, p.productName, p.image, p.description, p.price, p.discount, " +
+            "p.specialPrice, ci.quantity FROM Cart c LEFT JOIN c.cartItems ci LEFT JOIN ci.product p " +
+            "ORDER BY c.cartId, ci.cartItemId")
+    Stream<Object[]> streamCartLines();
+
+    @EntityGraph(value = "Cart.itemsWithProducts", type = EntityGraph.EntityGraphType.FETCH)
     @Query("SELECT c FROM Cart c WHERE c.user.email = ?1 AND c.cartId = ?2")
     Cart findCartByEmailAndCartId(String emailId, Long cartId);
 
     @Query("SELECT c FROM Cart c JOIN FETCH c.cartItems ci JOIN FETCH ci.product p WHERE ci.id = ?1")
     List<Cart> findCartsByProductId(Long productId);
+
+    //shifts each cart total by the price difference of its lines for the product, only for lines still on an old price
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.version = c.version + 1, c.totalPrice = c.totalPrice + " +
+            "(SELECT SUM(ci.quantity * (?2 - ci.productPrice)) FROM CartItem ci WHERE ci.cart = c AND ci.product.productId = ?1) " +
+            "WHERE c.cartId IN (SELECT ci.cart.cartId FROM CartItem ci WHERE ci.product.productId = ?1 AND ci.productPrice <> ?2)")
+    int repriceTotalsForProduct(Long productId, double newPrice);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.totalPrice = c.totalPrice + ?2, c.version = c.version + 1, c.updatedAt = ?3 " +
+            "WHERE c.cartId = ?1")
+    int addToTotalPrice(Long cartId, double amount, Instant updatedAt);
+
+    //carts from before updatedAt was recorded, in cartId order after the given one; served by idx_carts_updated_at
+    @Query("SELECT c.cartId FROM Cart c WHERE c.updatedAt IS NULL AND c.cartId > ?1 ORDER BY c.cartId")
+    List<Long> findUndatedCartIdsAfter(Long afterCartId, Pageable pageable);
+
+    //such carts start their idle time now
+    @Modifying
+    @Query("UPDATE Cart c SET c.updatedAt = ?2 WHERE c.cartId IN ?1 AND c.updatedAt IS NULL")
+    int stampUndatedCarts(Collection<Long> cartIds, Instant now);
+
+    //keyset page over idle carts in (updatedAt, cartId) order, starting after the given position
+    @Query("SELECT new com.ecommerce.ecommerce.cart.IdleCart(c.cartId, c.updatedAt) FROM Cart c " +
+            "WHERE c.updatedAt < ?1 AND (c.updatedAt > ?2 OR (c.updatedAt = ?2 AND c.cartId > ?3)) " +
+            "ORDER BY c.updatedAt, c.cartId")
+    List<IdleCart> findIdleCartsAfter(Instant cutoff, Instant afterUpdatedAt, Long afterCartId, Pageable pageable);
+
+    //locks the carts that are still idle, a cart changed since it was listed drops out
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c.cartId FROM Cart c WHERE c.cartId IN ?1 AND c.updatedAt < ?2")
+    List<Long> lockIdleCarts(Collection<Long> cartIds, Instant cutoff);
+
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.cartId IN ?1")
+    int deleteAllByCartIdIn(Collection<Long> cartIds);
 }
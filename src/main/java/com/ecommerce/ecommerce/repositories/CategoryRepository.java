@@ -2,7 +2,8 @@ package com.ecommerce.ecommerce.repositories;
 
 import com.ecommerce.ecommerce.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
-public interface CategoryRepository extends JpaRepository<Category,Long> {
+public interface CategoryRepository extends JpaRepository<Category,Long>, JpaSpecificationExecutor<Category> {
     Category findByCategoryName(String categoryName);
 }
@@ -1,9 +1,20 @@
 package com.ecommerce.ecommerce.repositories;
 
 import com.ecommerce.ecommerce.model.OrderItem;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+    //(orderId, productId) rows grouped by order; the MySQL driver streams the result set for this fetch size
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT oi.order.id, oi.product.productId FROM OrderItem oi ORDER BY oi.order.id")
+    Stream<Object[]> streamOrderProducts();
 }
@@ -0,0 +1,7 @@
+package com.ecommerce.ecommerce.repositories;
+
+import com.ecommerce.ecommerce.model.ProductPopularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ProductPopularityRepository extends JpaRepository<ProductPopularity, Long> {
+}
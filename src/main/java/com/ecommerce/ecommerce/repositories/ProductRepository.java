@@ -1,19 +1,24 @@
 package com.ecommerce.ecommerce.repositories;
 
-import com.ecommerce.ecommerce.model.Category;
 import com.ecommerce.ecommerce.model.Product;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>,
+        ProductViewRepository, ProductStockRepository {
 
-    Page<Product> findByCategoryOrderByPriceAsc(Category category, Pageable pageable);
+    boolean existsByProductName(String productName);
 
-    Page<Product> findByProductNameLikeIgnoreCase(String keyword, Pageable pageable);
+    List<Product> findAllByImage(String image);
 
-    boolean existsByProductName(String productName);
+    @Query("SELECT p.productName FROM Product p WHERE p.productName IN ?1")
+    List<String> findExistingProductNames(Collection<String> productNames);
+
+    //(productId, quantity) rows
+    @Query("SELECT p.productId, p.quantity FROM Product p WHERE p.productId IN ?1")
+    List<Object[]> findQuantities(Collection<Long> productIds);
 }
@@ -0,0 +1,11 @@
+package com.ecommerce.ecommerce.repositories;
+
+import java.util.List;
+import java.util.SortedMap;
+
+public interface ProductStockRepository {
+
+    //takes each quantity off its product's stock where enough is left; returns the products that were short,
+    //their stock is unchanged
+    List<Long> decrementStock(SortedMap<Long, Integer> quantitiesByProductId);
+}
@@ -0,0 +1,49 @@
+package com.ecommerce.ecommerce.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+//One JDBC batch of conditional decrements, sent in a single round trip by the MySQL driver with
+//rewriteBatchedStatements; a decrement that would take the stock below zero matches no row and leaves it as it was.
+//The rows are locked in product id order, so concurrent orders over the same products cannot deadlock.
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+    private static final String DECREMENT_STOCK =
+            "UPDATE products SET quantity = quantity - ? WHERE product_id = ? AND quantity >= ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> decrementStock(SortedMap<Long, Integer> quantitiesByProductId) {
+        if (quantitiesByProductId.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(DECREMENT_STOCK)) {
+                for (Map.Entry<Long, Integer> line : quantitiesByProductId.entrySet()) {
+                    statement.setInt(1, line.getValue());
+                    statement.setLong(2, line.getKey());
+                    statement.setInt(3, line.getValue());
+                    statement.addBatch();
+                }
+                int[] updateCounts = statement.executeBatch();
+                List<Long> shortProductIds = new ArrayList<>();
+                int index = 0;
+                //anything but one updated row, including SUCCESS_NO_INFO and EXECUTE_FAILED, is not a confirmed decrement
+                for (Long productId : quantitiesByProductId.keySet()) {
+                    if (updateCounts[index++] != 1) {
+                        shortProductIds.add(productId);
+                    }
+                }
+                return shortProductIds;
+            }
+        });
+    }
+}
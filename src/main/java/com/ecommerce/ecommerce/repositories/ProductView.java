@@ -0,0 +1,18 @@
+package com.ecommerce.ecommerce.repositories;
+
+import lombok.Value;
+
+//Read-only projection with just the columns a catalog listing shows, selected without loading the Product entity
+@Value
+public class ProductView {
+    Long productId;
+    String productName;
+    String image;
+    String description;
+    Integer quantity;
+    Double price;
+    double discount;
+    double specialPrice;
+    Long categoryId;
+    String categoryName;
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.ecommerce.repositories;
+
+import com.ecommerce.ecommerce.model.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface ProductViewRepository {
+
+    //a Page when withCount is set, otherwise a count-free Slice
+    Slice<ProductView> findViews(Specification<Product> spec, Pageable pageable, boolean withCount);
+
+    List<ProductView> findViews(Specification<Product> spec, Sort sort, int limit);
+
+    List<ProductView> findAllViews();
+}
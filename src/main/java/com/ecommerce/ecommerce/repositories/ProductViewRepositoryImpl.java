@@ -0,0 +1,93 @@
+package com.ecommerce.ecommerce.repositories;
+
+import com.ecommerce.ecommerce.model.Category;
+import com.ecommerce.ecommerce.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+//Selects ProductView rows with a constructor expression: one statement, no entity instances,
+//so the cart line collection on Product is never touched
+public class ProductViewRepositoryImpl implements ProductViewRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<ProductView> findViews(Specification<Product> spec, Pageable pageable, boolean withCount) {
+        TypedQuery<ProductView> query = viewQuery(spec, pageable.getSort());
+        query.setFirstResult((int) pageable.getOffset());
+        if (withCount) {
+            query.setMaxResults(pageable.getPageSize());
+            return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec));
+        }
+        //one extra row tells whether another slice follows
+        query.setMaxResults(pageable.getPageSize() + 1);
+        List<ProductView> rows = query.getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
+    @Override
+    public List<ProductView> findViews(Specification<Product> spec, Sort sort, int limit) {
+        return viewQuery(spec, sort).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<ProductView> findAllViews() {
+        return viewQuery(null, Sort.by("productId")).getResultList();
+    }
+
+    private TypedQuery<ProductView> viewQuery(Specification<Product> spec, Sort sort) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductView> query = criteriaBuilder.createQuery(ProductView.class);
+        Root<Product> root = query.from(Product.class);
+        Join<Product, Category> category = root.join("category", JoinType.LEFT);
+        query.select(criteriaBuilder.construct(ProductView.class,
+                root.get("productId"),
+                root.get("productName"),
+                root.get("image"),
+                root.get("description"),
+                root.get("quantity"),
+                root.get("price"),
+                root.get("discount"),
+                root.get("specialPrice"),
+                category.get("categoryId"),
+                category.get("categoryName")));
+        applySpecification(spec, root, query, criteriaBuilder);
+        query.orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Specification<Product> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(criteriaBuilder.count(root));
+        applySpecification(spec, root, query, criteriaBuilder);
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static void applySpecification(Specification<Product> spec, Root<Product> root, CriteriaQuery<?> query,
+                                           CriteriaBuilder criteriaBuilder) {
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, criteriaBuilder) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+}
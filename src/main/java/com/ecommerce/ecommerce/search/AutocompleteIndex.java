@@ -0,0 +1,393 @@
+package com.ecommerce.ecommerce.search;
+
+import com.ecommerce.ecommerce.events.CatalogListenerOrder;
+import com.ecommerce.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.ecommerce.events.ProductsImportedEvent;
+import com.ecommerce.ecommerce.model.Category;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.payload.SuggestionDTO;
+import com.ecommerce.ecommerce.repositories.CategoryRepository;
+import com.ecommerce.ecommerce.repositories.ProductRepository;
+import com.ecommerce.ecommerce.repositories.ProductView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Typeahead over product and category names in a compressed (radix) trie. Every name is inserted once per word start,
+//so "mou" finds "Wireless Mouse". Each node keeps the best suggestions of its subtree, which makes a lookup a walk
+//down at most prefix-length edges plus a copy of a bounded list.
+@Component
+public class AutocompleteIndex {
+    private static final Logger logger = LoggerFactory.getLogger(AutocompleteIndex.class);
+    //word starts indexed per name, a long name does not need a key for every trailing word
+    private static final int MAX_KEYS_PER_NAME = 8;
+
+    //higher score first (stock for products, product count for categories), then shorter and alphabetical text
+    private static final Comparator<Suggestion> RANK = Comparator.comparingLong(Suggestion::score).reversed()
+            .thenComparingInt(suggestion -> suggestion.text().length())
+            .thenComparing(Suggestion::text, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Suggestion::type)
+            .thenComparing(Suggestion::id);
+
+    @Value("${catalog.autocomplete.max-suggestions:10}")
+    private int maxSuggestions;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node("");
+    private final Map<Long, Suggestion> products = new HashMap<>();
+    private final Map<Long, Suggestion> categories = new HashMap<>();
+    private final Map<Long, Long> productCategory = new HashMap<>();
+    private final Map<Long, Long> categoryProductCounts = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ProductView> productViews = productRepository.findAllViews();
+        List<Category> categoryList = categoryRepository.findAll();
+        lock.writeLock().lock();
+        try {
+            root = new Node("");
+            products.clear();
+            categories.clear();
+            productCategory.clear();
+            categoryProductCounts.clear();
+            productViews.forEach(view -> {
+                productCategory.put(view.getProductId(), view.getCategoryId());
+                categoryProductCounts.merge(view.getCategoryId(), 1L, Long::sum);
+                putProduct(view.getProductId(), view.getProductName(), view.getQuantity());
+            });
+            categoryList.forEach(category -> putCategory(category.getCategoryId(), category.getCategoryName()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Autocomplete index built with {} products and {} categories", productViews.size(), categoryList.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            switch (event.getChangeType()) {
+                case CREATED -> {
+                    Product product = event.getProduct();
+                    productCategory.put(product.getProductId(), event.getCategoryId());
+                    putProduct(product.getProductId(), product.getProductName(), product.getQuantity());
+                    changeCategoryCount(event.getCategoryId(), 1);
+                }
+                case UPDATED, STOCK_UPDATED -> {
+                    Product product = event.getProduct();
+                    putProduct(product.getProductId(), product.getProductName(), product.getQuantity());
+                }
+                case DELETED -> {
+                    remove(products.remove(event.getProductId()));
+                    changeCategoryCount(productCategory.remove(event.getProductId()), -1);
+                }
+                case IMAGE_UPDATED -> {
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onProductsImported(ProductsImportedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (Product product : event.getProducts()) {
+                Long categoryId = product.getCategory().getCategoryId();
+                productCategory.put(product.getProductId(), categoryId);
+                putProduct(product.getProductId(), product.getProductName(), product.getQuantity());
+                changeCategoryCount(categoryId, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            switch (event.getChangeType()) {
+                case CREATED, UPDATED -> putCategory(event.getCategoryId(), event.getNewCategoryName());
+                case DELETED -> {
+                    remove(categories.remove(event.getCategoryId()));
+                    List<Long> productIds = productCategory.entrySet().stream()
+                            .filter(entry -> event.getCategoryId().equals(entry.getValue()))
+                            .map(Map.Entry::getKey)
+                            .toList();
+                    productIds.forEach(productId -> {
+                        remove(products.remove(productId));
+                        productCategory.remove(productId);
+                    });
+                    categoryProductCounts.remove(event.getCategoryId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        List<Suggestion> top;
+        lock.readLock().lock();
+        try {
+            top = find(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top.stream()
+                .limit(Math.min(limit, maxSuggestions))
+                .map(suggestion -> new SuggestionDTO(suggestion.type(), suggestion.id(), suggestion.text()))
+                .toList();
+    }
+
+    private void putProduct(Long productId, String productName, Integer quantity) {
+        long score = quantity != null ? Math.max(quantity, 0) : 0;
+        replace(products, new Suggestion(SuggestionDTO.Type.PRODUCT, productId, productName, score));
+    }
+
+    private void putCategory(Long categoryId, String categoryName) {
+        long score = categoryProductCounts.getOrDefault(categoryId, 0L);
+        replace(categories, new Suggestion(SuggestionDTO.Type.CATEGORY, categoryId, categoryName, score));
+    }
+
+    private void changeCategoryCount(Long categoryId, long delta) {
+        if (categoryId == null) {
+            return;
+        }
+        categoryProductCounts.merge(categoryId, delta, Long::sum);
+        Suggestion category = categories.get(categoryId);
+        if (category != null) {
+            putCategory(categoryId, category.text());
+        }
+    }
+
+    private void replace(Map<Long, Suggestion> entries, Suggestion suggestion) {
+        Suggestion previous = entries.put(suggestion.id(), suggestion);
+        if (suggestion.equals(previous)) {
+            return;
+        }
+        remove(previous);
+        if (suggestion.text() != null) {
+            keys(suggestion.text()).forEach(key -> insert(key, suggestion));
+        }
+    }
+
+    private void remove(Suggestion suggestion) {
+        if (suggestion != null && suggestion.text() != null) {
+            keys(suggestion.text()).forEach(key -> remove(key, suggestion));
+        }
+    }
+
+    private void insert(String key, Suggestion suggestion) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.children.put(key.charAt(i), child);
+                node = child;
+                path.add(node);
+                i = key.length();
+                break;
+            }
+            int common = commonPrefixLength(child.label, key, i);
+            if (common < child.label.length()) {
+                //the key diverges inside the edge: split it at the divergence point
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                node.children.put(middle.label.charAt(0), middle);
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        node.terminals.add(suggestion);
+        for (int j = path.size() - 1; j >= 0; j--) {
+            path.get(j).recompute(maxSuggestions);
+        }
+    }
+
+    private void remove(String key, Suggestion suggestion) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                return;
+            }
+            node = child;
+            path.add(node);
+            i += child.label.length();
+        }
+        node.terminals.remove(suggestion);
+        for (int j = path.size() - 1; j >= 1; j--) {
+            Node current = path.get(j);
+            Node parent = path.get(j - 1);
+            if (current.terminals.isEmpty() && current.children.isEmpty()) {
+                parent.children.remove(current.label.charAt(0));
+            } else if (current.terminals.isEmpty() && current.children.size() == 1) {
+                //an edge with a single continuation is folded back into one
+                Node only = current.children.values().iterator().next();
+                only.label = current.label + only.label;
+                parent.children.put(only.label.charAt(0), only);
+            } else {
+                current.recompute(maxSuggestions);
+            }
+        }
+        root.recompute(maxSuggestions);
+    }
+
+    private List<Suggestion> find(String key) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                return List.of();
+            }
+            int remaining = key.length() - i;
+            if (remaining <= child.label.length()) {
+                return child.label.startsWith(key.substring(i)) ? child.top : List.of();
+            }
+            if (!key.startsWith(child.label, i)) {
+                return List.of();
+            }
+            node = child;
+            i += child.label.length();
+        }
+        return node.top;
+    }
+
+    //every word start of the normalized name, "wireless gaming mouse" -> itself, "gaming mouse", "mouse"
+    private static Set<String> keys(String text) {
+        List<String> tokens = SearchTokenizer.tokenize(text);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int start = 0; start < tokens.size() && start < MAX_KEYS_PER_NAME; start++) {
+            keys.add(String.join(" ", tokens.subList(start, tokens.size())));
+        }
+        return keys;
+    }
+
+    //same normalization as the keys, a trailing separator is kept so "mouse " no longer matches "mousepad"
+    private static String normalize(String prefix) {
+        String key = String.join(" ", SearchTokenizer.tokenize(prefix));
+        if (!key.isEmpty() && !Character.isLetterOrDigit(prefix.charAt(prefix.length() - 1))) {
+            key += " ";
+        }
+        return key;
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int length = 0;
+        while (length < label.length() && offset + length < key.length()
+                && label.charAt(length) == key.charAt(offset + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private record Suggestion(SuggestionDTO.Type type, Long id, String text, long score) {
+    }
+
+    private static final class Node {
+        private String label;
+        //children keyed by the first character of their edge label
+        private final Map<Character, Node> children = new HashMap<>();
+        //ordered by rank: many names can share a key (every name ending in "mouse"), only the head is ever read
+        private final NavigableSet<Suggestion> terminals = new TreeSet<>(RANK);
+        //best suggestions in this subtree, read without copying by lookups
+        private List<Suggestion> top = List.of();
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        //k-way merge of already ranked lists: the own terminals and every child's top, stopping after limit hits
+        private void recompute(int limit) {
+            PriorityQueue<Cursor> heads = new PriorityQueue<>(Comparator.comparing(Cursor::head, RANK));
+            Cursor own = new Cursor(terminals.iterator());
+            if (own.advance()) {
+                heads.add(own);
+            }
+            for (Node child : children.values()) {
+                Cursor cursor = new Cursor(child.top.iterator());
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+            List<Suggestion> merged = new ArrayList<>(limit);
+            while (!heads.isEmpty() && merged.size() < limit) {
+                Cursor cursor = heads.poll();
+                //a name reachable through two word starts shows up in two children
+                if (!merged.contains(cursor.head)) {
+                    merged.add(cursor.head);
+                }
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+            top = List.copyOf(merged);
+        }
+    }
+
+    private static final class Cursor {
+        private final Iterator<Suggestion> iterator;
+        private Suggestion head;
+
+        private Cursor(Iterator<Suggestion> iterator) {
+            this.iterator = iterator;
+        }
+
+        private Suggestion head() {
+            return head;
+        }
+
+        private boolean advance() {
+            head = iterator.hasNext() ? iterator.next() : null;
+            return head != null;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.ecommerce.ecommerce.search;
+
+import com.ecommerce.ecommerce.events.OrderPlacedEvent;
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.ecommerce.repositories.OrderItemRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+//"Frequently bought together": for every product, the products that appeared in the same orders, most frequent first.
+//Placed orders update it incrementally once they commit. Each product keeps at most a fixed number of neighbours
+//(space-saving counting: a newcomer replaces the weakest neighbour and inherits its count), so memory is bounded by
+//the catalog size, not the order history. rebuild() recomputes it from order_items for recovery.
+@Component
+public class CoPurchaseIndex {
+    private static final Logger logger = LoggerFactory.getLogger(CoPurchaseIndex.class);
+
+    //pairs grow quadratically with the order size, bulk orders beyond this only count their first products
+    private static final int MAX_PRODUCTS_PER_ORDER = 100;
+
+    @Value("${catalog.recommendations.neighbours-per-product:32}")
+    private int capacity;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private LongTable<Neighbours> neighbours = new LongTable<>();
+    //orders placed while a rebuild scans, replayed onto the rebuilt table; null when no rebuild runs
+    private List<OrderPlacedEvent> replay;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        lock.writeLock().lock();
+        try {
+            record(neighbours, event.getProductIds());
+            if (replay != null) {
+                replay.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getChangeType() != ProductChangedEvent.ChangeType.DELETED) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            neighbours.remove(event.getProductId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //most frequently co-purchased catalog products first
+    public List<ProductDocument> recommendations(Long productId, int limit) {
+        long[] productIds;
+        lock.readLock().lock();
+        try {
+            Neighbours related = neighbours.get(productId);
+            productIds = related == null ? new long[0] : related.ranked();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Arrays.stream(productIds)
+                .mapToObj(productSearchIndex::get)
+                .filter(Objects::nonNull)
+                .limit(limit)
+                .toList();
+    }
+
+    //orders placed while the scan runs are recorded in the live table and replayed onto the rebuilt one, unless the
+    //scan already read them: ids are not assigned in commit order, so only the ids the scan saw tell which ones it missed
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${catalog.recommendations.rebuild-cron:-}")
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LongTable<Neighbours> rebuilt = new LongTable<>();
+        long[] scannedOrderIds;
+        try {
+            scannedOrderIds = transactionTemplate.execute(status -> scan(rebuilt));
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                replay = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            for (OrderPlacedEvent event : replay) {
+                if (Arrays.binarySearch(scannedOrderIds, event.getOrderId()) < 0) {
+                    record(rebuilt, event.getProductIds());
+                }
+            }
+            neighbours = rebuilt;
+            replay = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Co-purchase index built for {} products", rebuilt.size());
+    }
+
+    //streams order_items in order id order and records each order once all its rows are seen, returns the ids of the
+    //orders it read, ascending
+    private long[] scan(LongTable<Neighbours> table) {
+        long currentOrderId = -1;
+        List<Long> productIds = new ArrayList<>();
+        long[] orderIds = new long[1024];
+        int orderCount = 0;
+        try (Stream<Object[]> rows = orderItemRepository.streamOrderProducts()) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                long orderId = (Long) row[0];
+                if (orderId != currentOrderId) {
+                    record(table, productIds);
+                    productIds.clear();
+                    currentOrderId = orderId;
+                    if (orderCount == orderIds.length) {
+                        orderIds = Arrays.copyOf(orderIds, orderCount * 2);
+                    }
+                    orderIds[orderCount++] = orderId;
+                }
+                if (row[1] != null) {
+                    productIds.add((Long) row[1]);
+                }
+            }
+        }
+        record(table, productIds);
+        return Arrays.copyOf(orderIds, orderCount);
+    }
+
+    private void record(LongTable<Neighbours> table, List<Long> orderProductIds) {
+        long[] productIds = orderProductIds.stream()
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .distinct()
+                .limit(MAX_PRODUCTS_PER_ORDER)
+                .toArray();
+        for (long productId : productIds) {
+            Neighbours related = table.get(productId);
+            if (related == null) {
+                related = new Neighbours();
+                table.put(productId, related);
+            }
+            for (long other : productIds) {
+                if (other != productId) {
+                    related.add(other, capacity);
+                }
+            }
+        }
+    }
+
+    //co-purchased product ids with their counts, parallel arrays that grow up to the capacity
+    private static final class Neighbours {
+        private long[] productIds = new long[4];
+        private int[] counts = new int[4];
+        private int size;
+
+        private void add(long productId, int capacity) {
+            for (int i = 0; i < size; i++) {
+                if (productIds[i] == productId) {
+                    counts[i]++;
+                    return;
+                }
+            }
+            if (size < capacity) {
+                if (size == productIds.length) {
+                    int grown = Math.min(productIds.length * 2, capacity);
+                    productIds = Arrays.copyOf(productIds, grown);
+                    counts = Arrays.copyOf(counts, grown);
+                }
+                productIds[size] = productId;
+                counts[size++] = 1;
+                return;
+            }
+            int weakest = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[weakest]) {
+                    weakest = i;
+                }
+            }
+            productIds[weakest] = productId;
+            counts[weakest]++;
+        }
+
+        private long[] ranked() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(counts[b], counts[a]));
+            long[] ranked = new long[size];
+            for (int i = 0; i < size; i++) {
+                ranked[i] = productIds[order[i]];
+            }
+            return ranked;
+        }
+    }
+
+    //open addressing long -> value map with linear probing, avoids a boxed key and entry object per product
+    private static final class LongTable<V> {
+        private long[] keys = new long[16];
+        private Object[] values = new Object[16];
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        private V get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        private void put(long key, V value) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        //backward shift deletion keeps probe sequences intact without tombstones
+        private void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) {
+                return;
+            }
+            size--;
+            int hole = i;
+            for (int j = (hole + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                //move j into the hole unless its home slot lies cyclically in (hole, j]
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            values[hole] = null;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], (V) oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.ecommerce.ecommerce.search;
+
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.ecommerce.model.ProductPopularity;
+import com.ecommerce.ecommerce.repositories.ProductPopularityRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//View and add-to-cart counts per product. Requests only bump striped LongAdders; a scheduled flush drains them,
+//folds them into exponentially decaying trending scores and writes the deltas in batches, then publishes
+//immutable per-category rankings that the trending endpoint reads without locking.
+//Counts are approximate: an increment racing the drain of its counter can be lost.
+@Component
+public class PopularityTracker {
+    private static final Logger logger = LoggerFactory.getLogger(PopularityTracker.class);
+
+    //decayed scores below this are forgotten
+    private static final double MIN_SCORE = 0.01;
+
+    @Value("${catalog.popularity.view-weight:1}")
+    private double viewWeight;
+
+    @Value("${catalog.popularity.cart-add-weight:5}")
+    private double cartAddWeight;
+
+    @Value("${catalog.popularity.half-life-hours:24}")
+    private double halfLifeHours;
+
+    @Value("${catalog.popularity.trending-size:50}")
+    private int trendingSize;
+
+    @Value("${catalog.popularity.flush-batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private ProductPopularityRepository popularityRepository;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate transactionTemplate;
+    private final Map<Long, Counters> pending = new ConcurrentHashMap<>();
+    private final Set<Long> deleted = ConcurrentHashMap.newKeySet();
+    //decayed score per product as of the last flush, only touched under the monitor
+    private final Map<Long, Double> scores = new HashMap<>();
+    private Instant flushedAt = Instant.now();
+    private volatile Rankings rankings = new Rankings(List.of(), Map.of());
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void recordView(Long productId) {
+        Counters counters = counters(productId);
+        if (counters != null) {
+            counters.views.increment();
+        }
+    }
+
+    public void recordCartAdd(Long productId) {
+        Counters counters = counters(productId);
+        if (counters != null) {
+            counters.cartAdds.increment();
+        }
+    }
+
+    //highest scoring products first, overall when categoryId is null
+    public List<ProductDocument> trending(Long categoryId, int limit) {
+        Rankings current = rankings;
+        List<Long> productIds = categoryId == null
+                ? current.overall()
+                : current.byCategory().getOrDefault(categoryId, List.of());
+        return productIds.stream()
+                .map(productSearchIndex::get)
+                .filter(Objects::nonNull)
+                .filter(document -> categoryId == null || categoryId.equals(document.getCategoryId()))
+                .limit(limit)
+                .toList();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getChangeType() == ProductChangedEvent.ChangeType.DELETED) {
+            pending.remove(event.getProductId());
+            deleted.add(event.getProductId());
+        }
+    }
+
+    //rankings are rebuilt on every flush, so products indexed after this load are picked up by the first one
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        Instant now = Instant.now();
+        List<ProductPopularity> rows = popularityRepository.findAll();
+        for (ProductPopularity row : rows) {
+            double score = decay(row.getTrendingScore(), row.getScoredAt(), now);
+            if (score >= MIN_SCORE) {
+                scores.put(row.getProductId(), score);
+            }
+        }
+        flushedAt = now;
+        rankings = rank();
+        logger.info("Popularity scores loaded for {} products", scores.size());
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.popularity.flush-interval-ms:30000}",
+            initialDelayString = "${catalog.popularity.flush-interval-ms:30000}")
+    public synchronized void flush() {
+        Instant now = Instant.now();
+        Instant lastFlush = flushedAt;
+        flushedAt = now;
+        Map<Long, long[]> deltas = drain();
+        List<Long> removed = new ArrayList<>(deleted);
+        deleted.removeAll(removed);
+
+        //every score decays by the same factor, so one pass keeps them comparable
+        double factor = decay(1.0, lastFlush, now);
+        scores.replaceAll((productId, score) -> score * factor);
+        deltas.forEach((productId, delta) ->
+                scores.merge(productId, delta[0] * viewWeight + delta[1] * cartAddWeight, Double::sum));
+        removed.forEach(scores::remove);
+        scores.values().removeIf(score -> score < MIN_SCORE);
+
+        for (List<Long> chunk : chunks(new ArrayList<>(deltas.keySet()))) {
+            persist(chunk, deltas, now);
+        }
+        if (!removed.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> popularityRepository.deleteAllByIdInBatch(removed));
+        }
+        rankings = rank();
+    }
+
+    //null for ids the catalog does not hold, so made-up ids reported by clients allocate nothing
+    private Counters counters(Long productId) {
+        Counters counters = pending.get(productId);
+        if (counters != null) {
+            return counters;
+        }
+        if (productSearchIndex.get(productId) == null) {
+            return null;
+        }
+        return pending.computeIfAbsent(productId, id -> new Counters());
+    }
+
+    //productId -> {views, cartAdds} since the last flush; ids that are idle or not in the catalog are dropped
+    private Map<Long, long[]> drain() {
+        Map<Long, long[]> deltas = new HashMap<>();
+        Iterator<Map.Entry<Long, Counters>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Counters> entry = iterator.next();
+            long views = entry.getValue().views.sumThenReset();
+            long cartAdds = entry.getValue().cartAdds.sumThenReset();
+            if ((views == 0 && cartAdds == 0) || productSearchIndex.get(entry.getKey()) == null) {
+                iterator.remove();
+            } else {
+                deltas.put(entry.getKey(), new long[]{views, cartAdds});
+            }
+        }
+        return deltas;
+    }
+
+    //one select for the existing rows, then the updates and inserts go out as JDBC batches on commit
+    private void persist(List<Long> productIds, Map<Long, long[]> deltas, Instant now) {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            Map<Long, ProductPopularity> existing = popularityRepository.findAllById(productIds).stream()
+                    .collect(Collectors.toMap(ProductPopularity::getProductId, Function.identity()));
+            for (Long productId : productIds) {
+                ProductPopularity popularity = existing.get(productId);
+                if (popularity == null) {
+                    popularity = new ProductPopularity(productId, 0, 0, 0, now);
+                    entityManager.persist(popularity);
+                }
+                long[] delta = deltas.get(productId);
+                popularity.setViewCount(popularity.getViewCount() + delta[0]);
+                popularity.setCartAddCount(popularity.getCartAddCount() + delta[1]);
+                popularity.setTrendingScore(scores.getOrDefault(productId, 0.0));
+                popularity.setScoredAt(now);
+            }
+        });
+    }
+
+    private Rankings rank() {
+        List<Long> overall = new ArrayList<>();
+        Map<Long, List<Long>> byCategory = new HashMap<>();
+        scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .forEach(entry -> {
+                    ProductDocument document = productSearchIndex.get(entry.getKey());
+                    if (document == null) {
+                        return;
+                    }
+                    if (overall.size() < trendingSize) {
+                        overall.add(document.getProductId());
+                    }
+                    if (document.getCategoryId() != null) {
+                        List<Long> ranked = byCategory.computeIfAbsent(document.getCategoryId(), id -> new ArrayList<>());
+                        if (ranked.size() < trendingSize) {
+                            ranked.add(document.getProductId());
+                        }
+                    }
+                });
+        Map<Long, List<Long>> immutableByCategory = new HashMap<>();
+        byCategory.forEach((categoryId, ranked) -> immutableByCategory.put(categoryId, List.copyOf(ranked)));
+        return new Rankings(List.copyOf(overall), Map.copyOf(immutableByCategory));
+    }
+
+    private double decay(double score, Instant from, Instant to) {
+        if (from == null) {
+            return score;
+        }
+        double hours = Duration.between(from, to).toMillis() / 3_600_000.0;
+        return score * Math.pow(0.5, Math.max(hours, 0) / halfLifeHours);
+    }
+
+    private List<List<Long>> chunks(List<Long> productIds) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < productIds.size(); from += batchSize) {
+            chunks.add(productIds.subList(from, Math.min(from + batchSize, productIds.size())));
+        }
+        return chunks;
+    }
+
+    private static final class Counters {
+        private final LongAdder views = new LongAdder();
+        private final LongAdder cartAdds = new LongAdder();
+    }
+
+    private record Rankings(List<Long> overall, Map<Long, List<Long>> byCategory) {
+    }
+}
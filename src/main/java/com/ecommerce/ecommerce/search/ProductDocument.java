@@ -0,0 +1,60 @@
+package com.ecommerce.ecommerce.search;
+
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.payload.ProductDTO;
+import com.ecommerce.ecommerce.repositories.ProductView;
+import lombok.Value;
+
+//Immutable copy of the product columns the catalog read paths need, held by the in-memory indexes
+@Value
+public class ProductDocument {
+    Long productId;
+    String productName;
+    String image;
+    String description;
+    int quantity;
+    double price;
+    double discount;
+    double specialPrice;
+    Long categoryId;
+    String categoryName;
+
+    public static ProductDocument from(Product product) {
+        Long categoryId = product.getCategory() != null ? product.getCategory().getCategoryId() : null;
+        String categoryName = product.getCategory() != null ? product.getCategory().getCategoryName() : null;
+        return new ProductDocument(
+                product.getProductId(),
+                product.getProductName(),
+                product.getImage(),
+                product.getDescription(),
+                product.getQuantity() != null ? product.getQuantity() : 0,
+                product.getPrice() != null ? product.getPrice() : 0.0,
+                product.getDiscount(),
+                product.getSpecialPrice(),
+                categoryId,
+                categoryName);
+    }
+
+    public static ProductDocument from(ProductView view) {
+        return new ProductDocument(
+                view.getProductId(),
+                view.getProductName(),
+                view.getImage(),
+                view.getDescription(),
+                view.getQuantity() != null ? view.getQuantity() : 0,
+                view.getPrice() != null ? view.getPrice() : 0.0,
+                view.getDiscount(),
+                view.getSpecialPrice(),
+                view.getCategoryId(),
+                view.getCategoryName());
+    }
+
+    public ProductDocument withCategoryName(String newCategoryName) {
+        return new ProductDocument(productId, productName, image, description, quantity,
+                price, discount, specialPrice, categoryId, newCategoryName);
+    }
+
+    public ProductDTO toProductDTO() {
+        return new ProductDTO(productId, productName, image, description, quantity, price, discount, specialPrice);
+    }
+}
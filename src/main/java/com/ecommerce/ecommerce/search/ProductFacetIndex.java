@@ -0,0 +1,251 @@
+package com.ecommerce.ecommerce.search;
+
+import com.ecommerce.ecommerce.events.CatalogListenerOrder;
+import com.ecommerce.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.ecommerce.events.ProductsImportedEvent;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.payload.CategoryFacet;
+import com.ecommerce.ecommerce.payload.PriceBucket;
+import com.ecommerce.ecommerce.payload.ProductFacets;
+import com.ecommerce.ecommerce.repositories.ProductRepository;
+import com.ecommerce.ecommerce.repositories.ProductView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Columnar snapshot of the catalog columns facets are computed from, one primitive array per column.
+//Rows are kept dense: a removed row is overwritten by the last one, so a facet pass is a plain loop over [0, size).
+@Component
+public class ProductFacetIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ProductFacetIndex.class);
+    private static final long NO_CATEGORY = 0L;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    //ascending lower bounds of the specialPrice histogram buckets
+    @Value("${catalog.facets.price-buckets:0,25,50,100,250,500,1000}")
+    private double[] priceBounds;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] productIds = new long[INITIAL_CAPACITY];
+    private long[] categoryIds = new long[INITIAL_CAPACITY];
+    private double[] specialPrices = new double[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private int size;
+    //productId -> row
+    private final Map<Long, Integer> rows = new HashMap<>();
+    private final Map<Long, String> categoryNames = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ProductView> products = productRepository.findAllViews();
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            rows.clear();
+            categoryNames.clear();
+            products.forEach(product -> put(product.getProductId(), product.getCategoryId(), product.getCategoryName(),
+                    product.getSpecialPrice(), product.getQuantity()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Product facet snapshot built with {} products", products.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.getChangeType() == ProductChangedEvent.ChangeType.DELETED) {
+                delete(event.getProductId());
+            } else {
+                Product product = event.getProduct();
+                put(product.getProductId(), event.getCategoryId(), event.getCategoryName(),
+                        product.getSpecialPrice(), product.getQuantity());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onProductsImported(ProductsImportedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.getProducts().forEach(product -> put(product.getProductId(), product.getCategory().getCategoryId(),
+                    product.getCategory().getCategoryName(), product.getSpecialPrice(), product.getQuantity()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            switch (event.getChangeType()) {
+                case UPDATED -> categoryNames.put(event.getCategoryId(), event.getNewCategoryName());
+                case DELETED -> {
+                    long categoryId = event.getCategoryId();
+                    for (int row = size - 1; row >= 0; row--) {
+                        if (categoryIds[row] == categoryId) {
+                            delete(productIds[row]);
+                        }
+                    }
+                    categoryNames.remove(event.getCategoryId());
+                }
+                default -> {
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //facets over the whole catalog or one category by name, restricted to matchingIds when a keyword query supplies them
+    public ProductFacets facets(String categoryName, Set<Long> matchingIds) {
+        lock.readLock().lock();
+        try {
+            Set<Long> categoryFilter = categoryName == null || categoryName.isEmpty()
+                    ? null
+                    : categoryIdsNamed(categoryName);
+            Accumulator accumulator = new Accumulator(priceBounds.length);
+            if (matchingIds != null) {
+                for (Long productId : matchingIds) {
+                    Integer row = rows.get(productId);
+                    if (row != null) {
+                        accumulate(row, categoryFilter, accumulator);
+                    }
+                }
+            } else {
+                for (int row = 0; row < size; row++) {
+                    accumulate(row, categoryFilter, accumulator);
+                }
+            }
+            return accumulator.toFacets();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void accumulate(int row, Set<Long> categoryFilter, Accumulator accumulator) {
+        long categoryId = categoryIds[row];
+        if (categoryFilter != null && !categoryFilter.contains(categoryId)) {
+            return;
+        }
+        accumulator.categoryCounts.merge(categoryId, 1L, Long::sum);
+        accumulator.priceCounts[bucket(specialPrices[row])]++;
+        if (quantities[row] > 0) {
+            accumulator.inStock++;
+        } else {
+            accumulator.outOfStock++;
+        }
+    }
+
+    private int bucket(double price) {
+        int index = Arrays.binarySearch(priceBounds, price);
+        index = index >= 0 ? index : -index - 2;
+        return Math.max(index, 0);
+    }
+
+    private Set<Long> categoryIdsNamed(String categoryName) {
+        Set<Long> ids = new HashSet<>();
+        categoryNames.forEach((categoryId, name) -> {
+            if (categoryName.equalsIgnoreCase(name)) {
+                ids.add(categoryId);
+            }
+        });
+        return ids;
+    }
+
+    private void put(Long productId, Long categoryId, String categoryName, double specialPrice, Integer quantity) {
+        Integer row = rows.get(productId);
+        if (row == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            rows.put(productId, row);
+        }
+        long category = categoryId != null ? categoryId : NO_CATEGORY;
+        productIds[row] = productId;
+        categoryIds[row] = category;
+        specialPrices[row] = specialPrice;
+        quantities[row] = quantity != null ? quantity : 0;
+        if (categoryId != null && categoryName != null) {
+            categoryNames.put(categoryId, categoryName);
+        }
+    }
+
+    private void delete(Long productId) {
+        Integer row = rows.remove(productId);
+        if (row == null) {
+            return;
+        }
+        int last = --size;
+        if (row != last) {
+            productIds[row] = productIds[last];
+            categoryIds[row] = categoryIds[last];
+            specialPrices[row] = specialPrices[last];
+            quantities[row] = quantities[last];
+            rows.put(productIds[row], row);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= productIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, productIds.length * 2);
+        productIds = Arrays.copyOf(productIds, newCapacity);
+        categoryIds = Arrays.copyOf(categoryIds, newCapacity);
+        specialPrices = Arrays.copyOf(specialPrices, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+    }
+
+    private class Accumulator {
+        private final Map<Long, Long> categoryCounts = new HashMap<>();
+        private final long[] priceCounts;
+        private long inStock;
+        private long outOfStock;
+
+        private Accumulator(int buckets) {
+            priceCounts = new long[buckets];
+        }
+
+        private ProductFacets toFacets() {
+            List<CategoryFacet> categories = new ArrayList<>();
+            categoryCounts.forEach((categoryId, count) -> categories.add(new CategoryFacet(
+                    categoryId == NO_CATEGORY ? null : categoryId, categoryNames.get(categoryId), count)));
+            categories.sort(Comparator.comparingLong(CategoryFacet::getCount).reversed()
+                    .thenComparing(CategoryFacet::getCategoryName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)));
+            List<PriceBucket> buckets = new ArrayList<>();
+            for (int i = 0; i < priceCounts.length; i++) {
+                Double to = i + 1 < priceBounds.length ? priceBounds[i + 1] : null;
+                buckets.add(new PriceBucket(priceBounds[i], to, priceCounts[i]));
+            }
+            return new ProductFacets(categories, buckets, inStock, outOfStock);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.ecommerce.ecommerce.search;
+
+import com.ecommerce.ecommerce.config.AppConstants;
+import com.ecommerce.ecommerce.events.CatalogListenerOrder;
+import com.ecommerce.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.ecommerce.events.ProductsImportedEvent;
+import com.ecommerce.ecommerce.exceptions.APIException;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.repositories.ProductRepository;
+import com.ecommerce.ecommerce.repositories.ProductView;
+import com.ecommerce.ecommerce.util.PageCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Inverted index over productName and description, answers keyword searches without touching the database
+@Component
+public class ProductSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    //a query token that is only a prefix of an indexed term scores lower than an exact term match
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, ProductDocument> documents = new HashMap<>();
+    //term -> (productId -> field weighted term frequency)
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ProductView> products = productRepository.findAllViews();
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            documentTerms.clear();
+            products.forEach(product -> addDocument(ProductDocument.from(product)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Product search index built with {} products and {} terms", products.size(), postings.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getChangeType() == ProductChangedEvent.ChangeType.DELETED) {
+            remove(event.getProductId());
+        } else {
+            index(event.getProduct());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onProductsImported(ProductsImportedEvent event) {
+        List<ProductDocument> added = event.getProducts().stream().map(ProductDocument::from).toList();
+        lock.writeLock().lock();
+        try {
+            added.forEach(this::addDocument);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(CatalogListenerOrder.INDEXES)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        switch (event.getChangeType()) {
+            case UPDATED -> renameCategory(event.getCategoryId(), event.getNewCategoryName());
+            case DELETED -> removeCategory(event.getCategoryId());
+            default -> {
+            }
+        }
+    }
+
+    public void index(Product product) {
+        ProductDocument document = ProductDocument.from(product);
+        lock.writeLock().lock();
+        try {
+            removeDocument(document.getProductId());
+            addDocument(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void renameCategory(Long categoryId, String categoryName) {
+        lock.writeLock().lock();
+        try {
+            documents.replaceAll((productId, document) -> categoryId.equals(document.getCategoryId())
+                    ? document.withCategoryName(categoryName)
+                    : document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeCategory(Long categoryId) {
+        lock.writeLock().lock();
+        try {
+            List<Long> productIds = documents.values().stream()
+                    .filter(document -> categoryId.equals(document.getCategoryId()))
+                    .map(ProductDocument::getProductId)
+                    .toList();
+            productIds.forEach(this::removeDocument);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public ProductDocument get(Long productId) {
+        lock.readLock().lock();
+        try {
+            return documents.get(productId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public SearchResult search(String keyword, String categoryName, int pageNumber, int pageSize,
+                               String sortBy, String sortOrder) {
+        List<ScoredDocument> hits = sortedHits(keyword, categoryName, sortBy, sortOrder);
+        int from = (int) Math.min((long) pageNumber * pageSize, hits.size());
+        return page(hits, from, pageNumber, pageSize, sortBy, sortOrder);
+    }
+
+    //keyset variant: the page starts right after the row the cursor points at
+    public SearchResult searchAfter(String keyword, String categoryName, PageCursor cursor, int pageSize,
+                                    String sortBy, String sortOrder) {
+        List<ScoredDocument> hits = sortedHits(keyword, categoryName, sortBy, sortOrder);
+        int from = 0;
+        if (cursor != null) {
+            cursor.verify(sortKey(sortBy), isAscending(sortBy, sortOrder));
+            Comparator<ScoredDocument> comparator = comparator(sortBy, sortOrder);
+            ScoredDocument anchor = anchor(cursor);
+            while (from < hits.size() && comparator.compare(hits.get(from), anchor) <= 0) {
+                from++;
+            }
+        }
+        return page(hits, from, 0, pageSize, sortBy, sortOrder);
+    }
+
+    //ids of every product the query matches, unpaged, for aggregations over the full result set
+    public Set<Long> matchingIds(String keyword, String categoryName) {
+        List<String> queryTokens = SearchTokenizer.tokenize(keyword);
+        Set<Long> productIds = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            score(queryTokens).keySet().forEach(productId -> {
+                if (categoryName == null || categoryName.isEmpty()
+                        || categoryName.equalsIgnoreCase(documents.get(productId).getCategoryName())) {
+                    productIds.add(productId);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return productIds;
+    }
+
+    private List<ScoredDocument> sortedHits(String keyword, String categoryName, String sortBy, String sortOrder) {
+        List<String> queryTokens = SearchTokenizer.tokenize(keyword);
+        List<ScoredDocument> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> scores = score(queryTokens);
+            scores.forEach((productId, score) -> {
+                ProductDocument document = documents.get(productId);
+                if (categoryName == null || categoryName.isEmpty()
+                        || categoryName.equalsIgnoreCase(document.getCategoryName())) {
+                    hits.add(new ScoredDocument(document, score));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(comparator(sortBy, sortOrder));
+        return hits;
+    }
+
+    private SearchResult page(List<ScoredDocument> hits, int from, int pageNumber, int pageSize,
+                              String sortBy, String sortOrder) {
+        int to = (int) Math.min((long) from + pageSize, hits.size());
+        List<ProductDocument> page = hits.subList(from, to).stream()
+                .map(ScoredDocument::document)
+                .toList();
+        String nextCursor = null;
+        if (to < hits.size() && to > from) {
+            ScoredDocument last = hits.get(to - 1);
+            nextCursor = new PageCursor(sortKey(sortBy), isAscending(sortBy, sortOrder),
+                    last.document().getProductId(), String.valueOf(sortValue(last, sortBy))).encode();
+        }
+        return new SearchResult(page, pageNumber, pageSize, hits.size(), nextCursor);
+    }
+
+    //every query token has to match (as a whole term or a term prefix), scores are summed across tokens
+    private Map<Long, Float> score(List<String> queryTokens) {
+        Map<Long, Float> scores = null;
+        int documentCount = Math.max(documents.size(), 1);
+        for (String token : new HashSet<>(queryTokens)) {
+            Map<Long, Float> tokenScores = new HashMap<>();
+            NavigableMap<String, Map<Long, Float>> matches =
+                    postings.subMap(token, true, token + Character.MAX_VALUE, false);
+            for (Map.Entry<String, Map<Long, Float>> match : matches.entrySet()) {
+                String term = match.getKey();
+                Map<Long, Float> posting = match.getValue();
+                float factor = term.equals(token)
+                        ? 1.0f
+                        : PREFIX_MATCH_FACTOR * token.length() / term.length();
+                float idf = (float) Math.log(1.0 + (double) documentCount / posting.size());
+                posting.forEach((productId, weight) ->
+                        tokenScores.merge(productId, weight * factor * idf, Math::max));
+            }
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                scores.keySet().retainAll(tokenScores.keySet());
+                scores.replaceAll((productId, score) -> score + tokenScores.get(productId));
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores != null ? scores : new HashMap<>();
+    }
+
+    private Comparator<ScoredDocument> comparator(String sortBy, String sortOrder) {
+        Comparator<ScoredDocument> byId = Comparator.comparing(hit -> hit.document().getProductId());
+        if (isRelevance(sortBy)) {
+            return Comparator.comparingDouble(ScoredDocument::score).reversed().thenComparing(byId);
+        }
+        Comparator<ScoredDocument> comparator = switch (sortBy) {
+            case "productId" -> byId;
+            case "productName" -> Comparator.comparing(hit -> hit.document().getProductName(),
+                    Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+            case "price", "specialPrice", "discount", "quantity" ->
+                    Comparator.comparingDouble(hit -> ((Number) sortValue(hit, sortBy)).doubleValue());
+            default -> throw new APIException("Products cannot be sorted by " + sortBy);
+        };
+        if (!"asc".equalsIgnoreCase(sortOrder)) {
+            return comparator.reversed().thenComparing(byId.reversed());
+        }
+        return comparator.thenComparing(byId);
+    }
+
+    private static Object sortValue(ScoredDocument hit, String sortBy) {
+        ProductDocument document = hit.document();
+        if (isRelevance(sortBy)) {
+            return hit.score();
+        }
+        return switch (sortBy) {
+            case "productId" -> document.getProductId();
+            case "productName" -> document.getProductName();
+            case "price" -> document.getPrice();
+            case "specialPrice" -> document.getSpecialPrice();
+            case "discount" -> document.getDiscount();
+            case "quantity" -> document.getQuantity();
+            default -> throw new APIException("Products cannot be sorted by " + sortBy);
+        };
+    }
+
+    //a synthetic hit sitting exactly at the cursor position, so the normal comparator can seek past it
+    private static ScoredDocument anchor(PageCursor cursor) {
+        try {
+            String value = cursor.getLastValue();
+            double number = switch (cursor.getSortBy()) {
+                case "price", "specialPrice", "discount", "quantity" -> Double.parseDouble(value);
+                default -> 0.0;
+            };
+            ProductDocument document = new ProductDocument(cursor.getLastId(),
+                    "productName".equals(cursor.getSortBy()) ? value : null, null, null,
+                    (int) number, number, number, number, null, null);
+            float score = isRelevance(cursor.getSortBy()) ? Float.parseFloat(value) : 0.0f;
+            return new ScoredDocument(document, score);
+        } catch (NumberFormatException e) {
+            throw new APIException("Invalid page cursor");
+        }
+    }
+
+    private static boolean isRelevance(String sortBy) {
+        return sortBy == null || sortBy.equalsIgnoreCase(AppConstants.SORT_RELEVANCE);
+    }
+
+    private static String sortKey(String sortBy) {
+        return isRelevance(sortBy) ? AppConstants.SORT_RELEVANCE : sortBy;
+    }
+
+    private static boolean isAscending(String sortBy, String sortOrder) {
+        return !isRelevance(sortBy) && "asc".equalsIgnoreCase(sortOrder);
+    }
+
+    private void addDocument(ProductDocument document) {
+        Map<String, Float> weights = new HashMap<>();
+        SearchTokenizer.tokenize(document.getProductName())
+                .forEach(term -> weights.merge(term, NAME_WEIGHT, Float::sum));
+        SearchTokenizer.tokenize(document.getDescription())
+                .forEach(term -> weights.merge(term, DESCRIPTION_WEIGHT, Float::sum));
+
+        documents.put(document.getProductId(), document);
+        documentTerms.put(document.getProductId(), weights.keySet());
+        weights.forEach((term, weight) ->
+                postings.computeIfAbsent(term, key -> new HashMap<>()).put(document.getProductId(), weight));
+    }
+
+    private void removeDocument(Long productId) {
+        documents.remove(productId);
+        Collection<String> terms = documentTerms.remove(productId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private record ScoredDocument(ProductDocument document, float score) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.ecommerce.ecommerce.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class SearchResult {
+    private List<ProductDocument> documents;
+    private int pageNumber;
+    private int pageSize;
+    private long totalElements;
+    private String nextCursor;
+
+    public int getTotalPages() {
+        return pageSize == 0 ? 1 : (int) Math.ceil((double) totalElements / pageSize);
+    }
+
+    public boolean isLastPage() {
+        return (long) (pageNumber + 1) * pageSize >= totalElements;
+    }
+}
@@ -0,0 +1,36 @@
+package com.ecommerce.ecommerce.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public final class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    //lower-cases and splits on anything that is not a letter or a digit
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(normalized.substring(start));
+        }
+        return tokens;
+    }
+}
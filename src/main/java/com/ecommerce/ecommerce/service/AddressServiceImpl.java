@@ -1,13 +1,13 @@
 package com.ecommerce.ecommerce.service;
 
 import com.ecommerce.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.ecommerce.mapper.AddressMapper;
 import com.ecommerce.ecommerce.model.Address;
 import com.ecommerce.ecommerce.model.User;
 import com.ecommerce.ecommerce.payload.AddressDTO;
 import com.ecommerce.ecommerce.repositories.AddressRepository;
 import com.ecommerce.ecommerce.repositories.UserRepository;
 import com.ecommerce.ecommerce.util.AuthUtil;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -21,7 +21,7 @@ public class AddressServiceImpl implements AddressService {
     AuthUtil authUtil;
 
     @Autowired
-    ModelMapper modelMapper;
+    AddressMapper addressMapper;
 
     @Autowired
     AddressRepository addressRepository;
@@ -31,21 +31,21 @@ public class AddressServiceImpl implements AddressService {
 
     @Override
     public AddressDTO createAddress(AddressDTO addressDTO, User user) {
-        Address address = modelMapper.map(addressDTO, Address.class);
+        Address address = addressMapper.toAddress(addressDTO);
         List<Address> addressList = user.getAddresses();
         addressList.add(address);
         user.setAddresses(addressList);
 
         address.setUser(user);
         Address savedAddress = addressRepository.save(address);
-        return modelMapper.map(savedAddress, AddressDTO.class);
+        return addressMapper.toAddressDTO(savedAddress);
     }
 
     @Override
     public List<AddressDTO> getAddresses() {
         List<Address> addresses = addressRepository.findAll();
         List<AddressDTO> addressDTOS = addresses.stream()
-                .map(address -> modelMapper.map(address, AddressDTO.class))
+                .map(addressMapper::toAddressDTO)
                 .toList();
         return addressDTOS;
     }
@@ -54,14 +54,14 @@ public class AddressServiceImpl implements AddressService {
     public AddressDTO getAddressesById(Long addressId) {
         Address address = addressRepository.findById(addressId)
                 .orElseThrow(() -> new ResourceNotFoundException("Address", "addressId", addressId));
-        return modelMapper.map(address, AddressDTO.class);
+        return addressMapper.toAddressDTO(address);
     }
 
     @Override
     public List<AddressDTO> getUserAddresses(User user) {
         List<Address> addresses = user.getAddresses();
         return addresses.stream()
-                .map(address -> modelMapper.map(address, AddressDTO.class))
+                .map(addressMapper::toAddressDTO)
                 .toList();
     }
 
@@ -84,7 +84,7 @@ public class AddressServiceImpl implements AddressService {
         user.getAddresses().add(updatedAddress);
         userRepository.save(user);
 
-        return modelMapper.map(updatedAddress, AddressDTO.class);
+        return addressMapper.toAddressDTO(updatedAddress);
     }
 
     @Override
@@ -0,0 +1,14 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.payload.CartResponse;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface CartExportService {
+    //application/x-ndjson writes one cart per line, text/csv one row per cart line
+    void exportCarts(OutputStream out, MediaType format) throws IOException;
+
+    CartResponse getCartsAfter(String cursor, Integer pageSize);
+}
@@ -0,0 +1,183 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.cart.CartStore;
+import com.ecommerce.ecommerce.exceptions.APIException;
+import com.ecommerce.ecommerce.mapper.CartMapper;
+import com.ecommerce.ecommerce.model.Cart;
+import com.ecommerce.ecommerce.payload.CartDTO;
+import com.ecommerce.ecommerce.payload.CartResponse;
+import com.ecommerce.ecommerce.payload.ProductDTO;
+import com.ecommerce.ecommerce.repositories.CartRepository;
+import com.ecommerce.ecommerce.util.PageCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+//Admin reads of every cart. The export walks a single forward-only result set of cart lines in cart order and writes
+//each cart as soon as its last line has been read, so memory stays at one cart whatever the size of the table;
+//the JSON pages seek past the last cart id instead of skipping rows.
+@Service
+public class CartExportServiceImpl implements CartExportService {
+    private static final String CSV_HEADER = "cartId,totalPrice,productId,productName,quantity,price,discount,specialPrice";
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartMapper cartMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    //only present with cart.write-behind.enabled
+    @Autowired
+    private ObjectProvider<CartStore> cartStore;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public void exportCarts(OutputStream out, MediaType format) throws IOException {
+        boolean csv = format != null && ProductImportServiceImpl.TEXT_CSV.isCompatibleWith(format);
+        boolean ndjson = format != null && MediaType.APPLICATION_NDJSON.isCompatibleWith(format);
+        if (!csv && !ndjson) {
+            throw new APIException("Cart export is available as text/csv or application/x-ndjson");
+        }
+        flushCartStore();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (csv) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = cartRepository.streamCartLines()) {
+                    write(rows.iterator(), writer, csv);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public CartResponse getCartsAfter(String cursor, Integer pageSize) {
+        Long afterCartId = 0L;
+        if (cursor != null && !cursor.isEmpty()) {
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            pageCursor.verify("cartId", true);
+            afterCartId = pageCursor.getLastId();
+        }
+        flushCartStore();
+        //one extra id tells whether more follow
+        List<Long> cartIds = cartRepository.findCartIdsAfter(afterCartId, PageRequest.of(0, pageSize + 1));
+        boolean lastPage = cartIds.size() <= pageSize;
+        List<Long> pageIds = lastPage ? cartIds : cartIds.subList(0, pageSize);
+        List<CartDTO> carts = pageIds.isEmpty() ? List.of() : cartRepository.findAllWithItemsByCartIdIn(pageIds).stream()
+                .sorted(Comparator.comparing(Cart::getCartId))
+                .map(cartMapper::toCartDTO)
+                .toList();
+
+        CartResponse cartResponse = new CartResponse();
+        cartResponse.setCarts(carts);
+        cartResponse.setPageSize(pageSize);
+        cartResponse.setLastPage(lastPage);
+        if (!lastPage) {
+            cartResponse.setNextCursor(new PageCursor("cartId", true, pageIds.get(pageIds.size() - 1), null).encode());
+        }
+        return cartResponse;
+    }
+
+    //carts changed in memory are written first, so the database holds every acknowledged change
+    private void flushCartStore() {
+        CartStore store = cartStore.getIfAvailable();
+        if (store != null) {
+            store.flush();
+        }
+    }
+
+    //rows of one cart are consecutive; a cart is written when the next one starts
+    private void write(Iterator<Object[]> rows, Writer writer, boolean csv) throws IOException {
+        CartDTO current = null;
+        while (rows.hasNext()) {
+            Object[] row = rows.next();
+            Long cartId = (Long) row[0];
+            if (current == null || !current.getCartId().equals(cartId)) {
+                if (current != null) {
+                    write(current, writer, csv);
+                }
+                current = new CartDTO();
+                current.setCartId(cartId);
+                current.setTotalPrice((Double) row[1]);
+            }
+            if (row[2] != null) {
+                current.getProducts().add(new ProductDTO((Long) row[2], (String) row[3], (String) row[4],
+                        (String) row[5], (Integer) row[9], doubleValue(row[6]), doubleValue(row[7]), doubleValue(row[8])));
+            }
+        }
+        if (current != null) {
+            write(current, writer, csv);
+        }
+    }
+
+    private void write(CartDTO cart, Writer writer, boolean csv) throws IOException {
+        if (!csv) {
+            writer.write(objectMapper.writeValueAsString(cart));
+            writer.write('\n');
+            return;
+        }
+        if (cart.getProducts().isEmpty()) {
+            writer.write(cart.getCartId() + "," + cart.getTotalPrice() + ",,,,,,\n");
+            return;
+        }
+        for (ProductDTO product : cart.getProducts()) {
+            writer.write(cart.getCartId() + "," + cart.getTotalPrice() + "," + product.getProductId() + ","
+                    + csvField(product.getProductName()) + "," + product.getQuantity() + "," + product.getPrice() + ","
+                    + product.getDiscount() + "," + product.getSpecialPrice() + "\n");
+        }
+    }
+
+    private static double doubleValue(Object value) {
+        return value == null ? 0.0 : ((Number) value).doubleValue();
+    }
+
+    //RFC 4180: fields holding a comma, quote or line break are quoted, quotes inside are doubled
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -2,7 +2,6 @@ package com.ecommerce.ecommerce.service;
 
 import com.ecommerce.ecommerce.payload.CartDTO;
 import com.ecommerce.ecommerce.payload.CartItemDTO;
-import jakarta.transaction.Transactional;
 
 import java.util.List;
 
@@ -10,16 +9,21 @@ public interface CartService {
     CartDTO addProductToCart(Long productId, Integer quantity);
 
 
-    List<CartDTO> getCarts();
-
     CartDTO getCart(String emailId, Long cartId);
 
-    @Transactional
     CartDTO updateProductQuantityInCart(Long productId, int quantity);
 
     String deleteProductFromCart(Long cartId, Long productId);
 
     void updateProductInCarts(Long cartId, Long productId);
 
-    String createOrUpdateCartWithItems(List<CartItemDTO> cartItems);
+    int repriceProductInCarts(Long productId, double newPrice);
+
+    CartDTO createOrUpdateCartWithItems(List<CartItemDTO> cartItems);
+
+    //adds a guest cart's lines to the signed-in user's cart, skipping products no longer available
+    CartDTO mergeGuestCart(List<CartItemDTO> cartItems);
+
+    //makes the user's cart current in the database before code that reads or changes it there directly
+    void flushCart(String emailId);
 }
@@ -1,25 +1,37 @@
 package com.ecommerce.ecommerce.service;
 
+import com.ecommerce.ecommerce.cart.CartUpdateRetry;
 import com.ecommerce.ecommerce.exceptions.APIException;
 import com.ecommerce.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.ecommerce.mapper.CartMapper;
 import com.ecommerce.ecommerce.model.Cart;
 import com.ecommerce.ecommerce.model.CartItem;
 import com.ecommerce.ecommerce.model.Product;
 import com.ecommerce.ecommerce.payload.CartDTO;
 import com.ecommerce.ecommerce.payload.CartItemDTO;
-import com.ecommerce.ecommerce.payload.ProductDTO;
 import com.ecommerce.ecommerce.repositories.CartItemRepository;
 import com.ecommerce.ecommerce.repositories.CartRepository;
 import com.ecommerce.ecommerce.repositories.ProductRepository;
+import com.ecommerce.ecommerce.search.PopularityTracker;
 import com.ecommerce.ecommerce.util.AuthUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
-import org.modelmapper.ModelMapper;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 public class CartServiceImpl implements CartService {
@@ -37,11 +49,42 @@ public class CartServiceImpl implements CartService {
     CartItemRepository cartItemRepository;
 
     @Autowired
-    ModelMapper modelMapper;
+    CartMapper cartMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PopularityTracker popularityTracker;
+
+    @Autowired
+    private CartUpdateRetry cartUpdateRetry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    //rows per JDBC batch when a whole cart is replaced
+    @Value("${cart.sync.batch-size:100}")
+    private int batchSize;
+
+    private DistributionSummary cartsRepriced;
+
+    @PostConstruct
+    public void init() {
+        cartsRepriced = DistributionSummary.builder("cart.reprice.carts")
+                .description("Carts whose total changed because a product price changed")
+                .register(meterRegistry);
+    }
 
     @Override
     public CartDTO addProductToCart(Long productId, Integer quantity) {
-        //Find existing cart or create new cart if not exists
+        CartDTO cartDTO = cartUpdateRetry.execute("addProduct", () -> addProduct(productId, quantity));
+        popularityTracker.recordCartAdd(productId);
+        return cartDTO;
+    }
+
+    private CartDTO addProduct(Long productId, Integer quantity) {
+        //Find existing cart, with its lines and their products, or create new cart if not exists
         Cart cart = createCart();
         //Find product by productId
         //If product not found, throw exception
@@ -51,8 +94,9 @@ public class CartServiceImpl implements CartService {
         //Check if product is already in cart
         //If product is in cart, update quantity
 
-        CartItem cartItem = cartItemRepository.findCartItemByProductIdAndCartId(productId, cart.getCartId());
-        if (cartItem != null) {
+        boolean inCart = cart.getCartItems().stream()
+                .anyMatch(cartItem -> cartItem.getProduct().getProductId().equals(productId));
+        if (inCart) {
             throw new APIException("Product " + product.getProductName() + " already exists in the cart");
         }
 
@@ -86,22 +130,11 @@ public class CartServiceImpl implements CartService {
 
         //Convert cart entity to CartDTO
         //Return CartDTO
-        CartDTO cartDTO = modelMapper.map(cart, CartDTO.class);
-        List<CartItem> cartItems = cart.getCartItems();
-
-        Stream<ProductDTO> productStream = cartItems.stream().map(item -> {
-            ProductDTO map = modelMapper.map(item.getProduct(), ProductDTO.class);
-            map.setQuantity(item.getQuantity());
-            return map;
-        });
-
-        cartDTO.setProducts(productStream.toList());
-
-        return cartDTO;
+        return cartMapper.toCartDTO(cart);
     }
 
     private Cart createCart() {
-        Cart userCart = cartRepository.findCartByEmail(authUtil.loggedInUserEmail());
+        Cart userCart = cartRepository.findCartWithItemsByEmail(authUtil.loggedInUserEmail());
         if(userCart != null) {
             return userCart;
         }
@@ -111,60 +144,31 @@ public class CartServiceImpl implements CartService {
         return cartRepository.save(cart);
     }
 
-    @Override
-    public List<CartDTO> getCarts() {
-        List<Cart> carts = cartRepository.findAll();
-        if(carts.isEmpty()) {
-            throw new APIException("Cart is empty");
-        }
-        List<CartDTO> cartDTOS = carts.stream().map(cart -> {
-            CartDTO cartDTO = modelMapper.map(cart, CartDTO.class);
-
-            List<ProductDTO> products = cart.getCartItems().stream().map(cartItem -> {
-                ProductDTO productDTO = modelMapper.map(cartItem.getProduct(), ProductDTO.class);
-                productDTO.setQuantity(cartItem.getQuantity());
-                return productDTO;
-            }).collect(Collectors.toList());
-
-            cartDTO.setProducts(products);
-            return cartDTO;
-        }).collect(Collectors.toList());
-        return cartDTOS;
-    }
-
     @Override
     public CartDTO getCart(String emailId, Long cartId) {
+        //only matches a cart owned by emailId
         Cart cart = cartRepository.findCartByEmailAndCartId(emailId, cartId);
 
         if(cart == null) {
             throw new ResourceNotFoundException("Cart", "cartId", cartId);
         }
 
-        if(!cart.getUser().getEmail().equals(emailId)) {
-            throw new APIException("You are not authorized to view this cart");
-        }
-
-        CartDTO cartDTO = modelMapper.map(cart, CartDTO.class);
-
-        List<ProductDTO> products = cart.getCartItems().stream().map(cartItem -> {
-            ProductDTO productDTO = modelMapper.map(cartItem.getProduct(), ProductDTO.class);
-            productDTO.setQuantity(cartItem.getQuantity());
-            return productDTO;
-        }).collect(Collectors.toList());
-
-        cartDTO.setProducts(products);
-        return cartDTO;
+        return cartMapper.toCartDTO(cart);
     }
 
     @Override
-    @Transactional
     public CartDTO updateProductQuantityInCart(Long productId, int quantity) {
-        String emilId = authUtil.loggedInUserEmail();
-        Cart usercart = cartRepository.findCartByEmail(emilId);
-        Long cartId = usercart.getCartId();
+        return cartUpdateRetry.execute("updateQuantity", () -> updateQuantity(productId, quantity));
+    }
 
-        Cart cart = cartRepository.findById(cartId)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart", "cartId", cartId));
+    //quantity and total move with in-database increments, so concurrent taps on one line add up instead of
+    //overwriting each other; a version conflict only happens when a line is removed or emptied meanwhile
+    private CartDTO updateQuantity(Long productId, int quantity) {
+        String emilId = authUtil.loggedInUserEmail();
+        Long cartId = cartRepository.findCartIdByEmail(emilId);
+        if (cartId == null) {
+            throw new ResourceNotFoundException("Cart", "email", emilId);
+        }
 
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "productId", productId));
@@ -184,34 +188,23 @@ public class CartServiceImpl implements CartService {
             throw new APIException("Quantity cannot be negative");
         }
         if(newQuantity == 0) {
-            deleteProductFromCart(productId, cartId);
+            deleteProduct(cartId, productId);
+        } else if (cartItemRepository.addQuantity(cartItem.getCartItemId(), quantity,
+                product.getSpecialPrice(), product.getDiscount()) == 0) {
+            //deleted or taken to zero by another request since it was read
+            throw new ObjectOptimisticLockingFailureException(CartItem.class, cartItem.getCartItemId());
         } else {
-            cartItem.setProductPrice(product.getSpecialPrice());
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-            cartItem.setDiscount(product.getDiscount());
-            cart.setTotalPrice(cart.getTotalPrice() + product.getSpecialPrice() * quantity);
-            cartRepository.save(cart);
+            cartRepository.addToTotalPrice(cartId, product.getSpecialPrice() * quantity, Instant.now());
         }
-
-        CartItem updatedItem = cartItemRepository.save(cartItem);
-        if(updatedItem.getQuantity() == 0) {
-            cartItemRepository.deleteById(updatedItem.getCartItemId());
-        }
-        CartDTO cartDTO = modelMapper.map(updatedItem, CartDTO.class);
-        List<CartItem> cartItems = cart.getCartItems();
-
-        Stream<ProductDTO> productStream = cartItems.stream().map(item -> {
-            ProductDTO prd = modelMapper.map(item.getProduct(), ProductDTO.class);
-            prd.setQuantity(item.getQuantity());
-            return prd;
-        });
-        cartDTO.setProducts(productStream.toList());
-        return cartDTO;
+        return cartMapper.toCartDTO(cartRepository.findCartWithItemsByEmail(emilId));
     }
 
-    @Transactional
     @Override
     public String deleteProductFromCart(Long cartId, Long productId) {
+        return cartUpdateRetry.execute("deleteProduct", () -> deleteProduct(cartId, productId));
+    }
+
+    private String deleteProduct(Long cartId, Long productId) {
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cart", "cartId", cartId));
         Product product = productRepository.findById(productId)
@@ -227,6 +220,13 @@ public class CartServiceImpl implements CartService {
 
     @Override
     public void updateProductInCarts(Long cartId, Long productId) {
+        cartUpdateRetry.execute("repriceLine", () -> {
+            repriceLine(cartId, productId);
+            return null;
+        });
+    }
+
+    private void repriceLine(Long cartId, Long productId) {
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cart", "cartId", cartId));
         Product product = productRepository.findById(productId)
@@ -242,12 +242,38 @@ public class CartServiceImpl implements CartService {
         cartItem = cartItemRepository.save(cartItem);
     }
 
+    //set-based repricing: cart totals move by the price delta of their lines first, then the lines take the new price
     @Transactional
     @Override
-    public String createOrUpdateCartWithItems(List<CartItemDTO> cartItems) {
+    public int repriceProductInCarts(Long productId, double newPrice) {
+        int cartsTouched = cartRepository.repriceTotalsForProduct(productId, newPrice);
+        cartItemRepository.repriceProduct(productId, newPrice);
+        cartsRepriced.record(cartsTouched);
+        return cartsTouched;
+    }
+
+    //one query for all requested products and one bulk delete for the old lines; the new lines go out as one JDBC
+    //batch and the total is summed while they are built
+    @Override
+    public CartDTO createOrUpdateCartWithItems(List<CartItemDTO> cartItems) {
+        return cartUpdateRetry.execute("replaceCart", () -> replaceCart(cartItems));
+    }
+
+    private CartDTO replaceCart(List<CartItemDTO> cartItems) {
         // Get user's email
         String emailId = authUtil.loggedInUserEmail();
 
+        // Resolve every product up front, so an unknown id leaves the cart untouched
+        Map<Long, Product> products = productRepository.findAllById(cartItems.stream()
+                        .map(CartItemDTO::getProductId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Product::getProductId, Function.identity()));
+        for (CartItemDTO cartItemDTO : cartItems) {
+            if (!products.containsKey(cartItemDTO.getProductId())) {
+                throw new ResourceNotFoundException("Product", "productId", cartItemDTO.getProductId());
+            }
+        }
+
         // Check if an existing cart is available or create a new one
         Cart existingCart = cartRepository.findCartByEmail(emailId);
         if (existingCart == null) {
@@ -261,33 +287,86 @@ public class CartServiceImpl implements CartService {
         }
 
         double totalPrice = 0.00;
-
-        // Process each item in the request to add to the cart
+        List<CartItem> newItems = new ArrayList<>(cartItems.size());
         for (CartItemDTO cartItemDTO : cartItems) {
-            Long productId = cartItemDTO.getProductId();
+            Product product = products.get(cartItemDTO.getProductId());
             Integer quantity = cartItemDTO.getQuantity();
-
-            // Find the product by ID
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Product", "productId", productId));
-
-            // Directly update product stock and total price
-            // product.setQuantity(product.getQuantity() - quantity);
             totalPrice += product.getSpecialPrice() * quantity;
 
-            // Create and save cart item
             CartItem cartItem = new CartItem();
             cartItem.setProduct(product);
             cartItem.setCart(existingCart);
             cartItem.setQuantity(quantity);
             cartItem.setProductPrice(product.getSpecialPrice());
             cartItem.setDiscount(product.getDiscount());
-            cartItemRepository.save(cartItem);
+            newItems.add(cartItem);
         }
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+        cartItemRepository.saveAll(newItems);
 
-        // Update the cart's total price and save
+        // Update the cart's total price, the lines are reported from newItems since the bulk delete left
+        // the cart's own collection stale
         existingCart.setTotalPrice(totalPrice);
-        cartRepository.save(existingCart);
-        return "Cart created/updated with the new items successfully";
+        return cartMapper.toCartDTO(existingCart, newItems);
+    }
+
+    //one query for the cart with its lines and one for the guest cart's products; new lines and raised quantities
+    //go out as JDBC batches. Quantities are capped at the stock, the total is recomputed from every line
+    @Override
+    public CartDTO mergeGuestCart(List<CartItemDTO> cartItems) {
+        return cartUpdateRetry.execute("mergeGuestCart", () -> mergeLines(cartItems));
+    }
+
+    private CartDTO mergeLines(List<CartItemDTO> cartItems) {
+        String emailId = authUtil.loggedInUserEmail();
+        Map<Long, Product> products = productRepository.findAllById(cartItems.stream()
+                        .map(CartItemDTO::getProductId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Product::getProductId, Function.identity()));
+
+        Cart cart = cartRepository.findCartWithItemsByEmail(emailId);
+        if (cart == null) {
+            cart = new Cart();
+            cart.setTotalPrice(0.00);
+            cart.setUser(authUtil.getLoggedInUser());
+            cart = cartRepository.save(cart);
+        }
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+
+        Map<Long, CartItem> itemsByProduct = cart.getCartItems().stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getProductId(), Function.identity(),
+                        (first, second) -> first));
+        List<CartItem> newItems = new ArrayList<>();
+        for (CartItemDTO guestItem : cartItems) {
+            Product product = products.get(guestItem.getProductId());
+            //deleted or sold out since it went into the guest cart
+            if (product == null || product.getQuantity() == null || product.getQuantity() <= 0) {
+                continue;
+            }
+            CartItem cartItem = itemsByProduct.get(product.getProductId());
+            if (cartItem != null) {
+                cartItem.setQuantity(Math.min(cartItem.getQuantity() + guestItem.getQuantity(), product.getQuantity()));
+                continue;
+            }
+            cartItem = new CartItem();
+            cartItem.setProduct(product);
+            cartItem.setCart(cart);
+            cartItem.setQuantity(Math.min(guestItem.getQuantity(), product.getQuantity()));
+            cartItem.setProductPrice(product.getSpecialPrice());
+            cartItem.setDiscount(product.getDiscount());
+            newItems.add(cartItem);
+            itemsByProduct.put(product.getProductId(), cartItem);
+        }
+        cartItemRepository.saveAll(newItems);
+        cart.getCartItems().addAll(newItems);
+        cart.setTotalPrice(cart.getCartItems().stream()
+                .mapToDouble(item -> item.getProductPrice() * item.getQuantity())
+                .sum());
+        return cartMapper.toCartDTO(cart);
+    }
+
+    //every change is already written through
+    @Override
+    public void flushCart(String emailId) {
     }
 }
@@ -1,19 +1,17 @@
 package com.ecommerce.ecommerce.service;
 
+import com.ecommerce.ecommerce.cache.CategorySnapshot;
+import com.ecommerce.ecommerce.events.CategoryChangedEvent;
 import com.ecommerce.ecommerce.exceptions.APIException;
 import com.ecommerce.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.ecommerce.mapper.CategoryMapper;
 import com.ecommerce.ecommerce.model.Category;
 import com.ecommerce.ecommerce.payload.CategoryDTO;
 import com.ecommerce.ecommerce.payload.CategoryResponse;
 import com.ecommerce.ecommerce.repositories.CategoryRepository;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import java.util.List;
 
 @Service
 public class CategoryServiceImpl implements CategoryService{
@@ -21,43 +19,35 @@ public class CategoryServiceImpl implements CategoryService{
     private CategoryRepository categoryRepository;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private CategoryMapper categoryMapper;
 
-    @Override
-    public CategoryResponse getAllCategories(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
-        Sort sortbyandOrder = sortOrder.equalsIgnoreCase("asc")
-                ? Sort.by(sortBy).ascending()
-                : Sort.by(sortBy).descending();
-        Pageable pageDetails = PageRequest.of(pageNumber, pageSize, sortbyandOrder);
-        Page<Category> categoryPage = categoryRepository.findAll(pageDetails);
-        List<Category> categories = categoryPage.getContent();
-//        List<Category> categories = categoryRepository.findAll();
-        if (categories.isEmpty())
-            throw new APIException("No category created till now.");
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
-        List<CategoryDTO> categoryDTOS = categories.stream()
-                .map(category -> modelMapper.map(category, CategoryDTO.class))
-                .toList();
-        CategoryResponse categoryResponse = new CategoryResponse();
-        categoryResponse.setContent(categoryDTOS);
-        categoryResponse.setTotalPages(categoryPage.getTotalPages());
-        categoryResponse.setPageNumber(categoryPage.getNumber());
-        categoryResponse.setPageSize(categoryPage.getSize());
-        categoryResponse.setTotalElements(categoryPage.getTotalElements());
-        categoryResponse.setLastPage(categoryPage.isLast());
+    @Autowired
+    private CategorySnapshot categorySnapshot;
 
-        return categoryResponse;
+    //answered from the in-memory snapshot, the database is only read when a category change commits
+    @Override
+    public CategoryResponse getAllCategories(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder,
+                                             String cursor, boolean includeCount) {
+        if (cursor != null) {
+            return categorySnapshot.pageAfter(cursor, pageSize, sortBy, sortOrder, includeCount);
+        }
+        return categorySnapshot.page(pageNumber, pageSize, sortBy, sortOrder, includeCount);
     }
 
     @Override
     public CategoryDTO createCategory(CategoryDTO categoryDTO) {
-        Category category = modelMapper.map(categoryDTO, Category.class);
+        Category category = categoryMapper.toCategory(categoryDTO);
         Category categoryFromDB = categoryRepository.findByCategoryName(category.getCategoryName());
         if (categoryFromDB != null) {
             throw new APIException("Category with the name " + categoryFromDB.getCategoryName() + " already exists !!!");
         }
         Category savedCategory = categoryRepository.save(category);
-        return modelMapper.map(savedCategory, CategoryDTO.class);
+        eventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getCategoryId(),
+                savedCategory.getCategoryName(), savedCategory.getCategoryName(), CategoryChangedEvent.ChangeType.CREATED));
+        return categoryMapper.toCategoryDTO(savedCategory);
     }
 
     @Override
@@ -65,16 +55,21 @@ public class CategoryServiceImpl implements CategoryService{
         Category category = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category","categoryId",categoryId));
         categoryRepository.delete(category);
-        return modelMapper.map(category, CategoryDTO.class);
+        eventPublisher.publishEvent(new CategoryChangedEvent(categoryId,
+                category.getCategoryName(), null, CategoryChangedEvent.ChangeType.DELETED));
+        return categoryMapper.toCategoryDTO(category);
     }
 
     @Override
     public CategoryDTO updateCategory(CategoryDTO categoryDTO, Long categoryId) {
         Category savedCategory = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category","categoryId",categoryId));
-        Category category = modelMapper.map(categoryDTO, Category.class);
+        Category category = categoryMapper.toCategory(categoryDTO);
         category.setCategoryId(categoryId);
+        String previousName = savedCategory.getCategoryName();
         savedCategory = categoryRepository.save(category);
-        return modelMapper.map(savedCategory, CategoryDTO.class);
+        eventPublisher.publishEvent(new CategoryChangedEvent(categoryId,
+                previousName, savedCategory.getCategoryName(), CategoryChangedEvent.ChangeType.UPDATED));
+        return categoryMapper.toCategoryDTO(savedCategory);
     }
 }
@@ -7,4 +7,7 @@ import java.io.IOException;
 public interface FileService {
 
     String uploadImage(String path, MultipartFile image) throws IOException;
+
+    //the listing thumbnail of an uploaded image relative to the image directory, or the image itself until it exists
+    String listingImage(String imageName);
 }
@@ -1,35 +1,201 @@
 package com.ecommerce.ecommerce.service;
 
+import com.ecommerce.ecommerce.events.ListingImageChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.UUID;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 
+//Images are stored under the SHA-256 of their content, so re-uploading the same file reuses the stored copy.
+//Scaled-down variants live in one sub directory per size ({path}/{size}/{name}) and are written by the
+//thumbnail pool after the upload returns; listings link a variant once it exists, and the products showing the image
+//are announced then so cached listing pages stop linking the original.
 @Service
 public class FileServiceImpl implements FileService {
+    private static final Logger logger = LoggerFactory.getLogger(FileServiceImpl.class);
+
+    @Value("${project.image}")
+    private String imageDirectory;
+
+    //longest edge of each generated variant
+    @Value("${image.thumbnail.sizes:200,480}")
+    private List<Integer> thumbnailSizes;
+
+    @Value("${image.listing.size:200}")
+    private int listingSize;
+
+    @Autowired
+    @Qualifier("thumbnailExecutor")
+    private Executor thumbnailExecutor;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    //"{size}/{name}" of every variant on disk
+    private final Set<String> variants = ConcurrentHashMap.newKeySet();
 
     @Override
     public String uploadImage(String path, MultipartFile image) throws IOException {
         //file name of current / original file
         String originalFileName = image.getOriginalFilename();
-
-        //generate a unique file name
-        String randomId = UUID.randomUUID().toString();
-        String newName = randomId.concat(originalFileName.substring(originalFileName.lastIndexOf('.')));
-        String imagePath = path + File.separator + newName;
+        String extension = originalFileName != null && originalFileName.lastIndexOf('.') >= 0
+                ? originalFileName.substring(originalFileName.lastIndexOf('.')).toLowerCase(Locale.ROOT)
+                : "";
 
         //check if path exisit and create
-        File folder = new File(path);
-        if (!folder.exists()) {
-            folder.mkdirs();
+        Path folder = Paths.get(path);
+        Files.createDirectories(folder);
+
+        //hash while copying, the content hash becomes the file name
+        Path upload = Files.createTempFile(folder, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(image.getInputStream(), digest)) {
+                Files.copy(in, upload, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String newName = HexFormat.of().formatHex(digest.digest()) + extension;
+            Path target = folder.resolve(newName);
+            if (Files.exists(target)) {
+                logger.debug("Upload {} already stored as {}", originalFileName, newName);
+            } else {
+                Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            thumbnailExecutor.execute(() -> writeVariants(folder, newName));
+            return newName;
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    @Override
+    public String listingImage(String imageName) {
+        String variant = listingSize + "/" + imageName;
+        return variants.contains(variant) ? variant : imageName;
+    }
+
+    //picks up the variants already on disk, then backfills missing ones for images stored before
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexVariants() {
+        Path folder = Paths.get(imageDirectory);
+        for (Integer size : thumbnailSizes) {
+            try (Stream<Path> files = Files.list(folder.resolve(String.valueOf(size)))) {
+                files.forEach(file -> variants.add(size + "/" + file.getFileName()));
+            } catch (IOException e) {
+                //no variants of this size yet
+            }
+        }
+        thumbnailExecutor.execute(() -> {
+            try (Stream<Path> files = Files.list(folder)) {
+                files.filter(Files::isRegularFile)
+                        .map(file -> file.getFileName().toString())
+                        .filter(name -> !name.endsWith(".tmp"))
+                        .filter(name -> thumbnailSizes.stream().anyMatch(size -> !variants.contains(size + "/" + name)))
+                        .forEach(name -> thumbnailExecutor.execute(() -> writeVariants(folder, name)));
+            } catch (IOException e) {
+                logger.warn("Could not list image directory {}", folder, e);
+            }
+        });
+    }
+
+    //decodes the original once, variants are written to a temp file and moved into place so they are never seen half written
+    private void writeVariants(Path folder, String imageName) {
+        try {
+            String format = imageName.substring(imageName.lastIndexOf('.') + 1);
+            if (!ImageIO.getImageWritersBySuffix(format).hasNext()) {
+                return;
+            }
+            BufferedImage original = null;
+            for (Integer size : thumbnailSizes) {
+                String variant = size + "/" + imageName;
+                Path target = folder.resolve(variant);
+                if (variants.contains(variant) || Files.exists(target)) {
+                    added(size, variant, imageName);
+                    continue;
+                }
+                if (original == null) {
+                    original = ImageIO.read(folder.resolve(imageName).toFile());
+                    if (original == null) {
+                        return;
+                    }
+                }
+                //smaller originals are served as they are
+                if (Math.max(original.getWidth(), original.getHeight()) <= size) {
+                    continue;
+                }
+                Files.createDirectories(target.getParent());
+                Path scaled = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+                try {
+                    ImageIO.write(scale(original, size, format), format, scaled.toFile());
+                    Files.move(scaled, target, StandardCopyOption.ATOMIC_MOVE);
+                    added(size, variant, imageName);
+                } finally {
+                    Files.deleteIfExists(scaled);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not generate thumbnails for {}", imageName, e);
+        }
+    }
+
+    //a new listing-size variant changes the URL listingImage returns
+    private void added(int size, String variant, String imageName) {
+        if (variants.add(variant) && size == listingSize) {
+            eventPublisher.publishEvent(new ListingImageChangedEvent(imageName));
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage original, int size, String format) {
+        double factor = (double) size / Math.max(original.getWidth(), original.getHeight());
+        int width = Math.max(1, (int) Math.round(original.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(original.getHeight() * factor));
+        //JPEG has no alpha channel
+        boolean opaque = format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg");
+        BufferedImage scaled = new BufferedImage(width, height,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-        Files.copy(image.getInputStream(), Paths.get(imagePath));
-        //
-        return newName;
     }
 }
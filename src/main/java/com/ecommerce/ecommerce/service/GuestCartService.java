@@ -0,0 +1,20 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.cart.GuestCart;
+import com.ecommerce.ecommerce.payload.CartDTO;
+import com.ecommerce.ecommerce.payload.CartItemDTO;
+
+import java.util.List;
+
+public interface GuestCartService {
+    CartDTO getCart(String token);
+
+    GuestCart addProductToCart(String token, Long productId, Integer quantity);
+
+    GuestCart updateProductQuantityInCart(String token, Long productId, int quantity);
+
+    GuestCart deleteProductFromCart(String token, Long productId);
+
+    //the lines to merge into the user's cart at sign-in, empty when there is no valid guest cart
+    List<CartItemDTO> getCartItems(String token);
+}
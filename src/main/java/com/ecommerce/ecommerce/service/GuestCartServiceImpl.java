@@ -0,0 +1,132 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.cart.GuestCart;
+import com.ecommerce.ecommerce.cart.GuestCartTokens;
+import com.ecommerce.ecommerce.exceptions.APIException;
+import com.ecommerce.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.ecommerce.payload.CartDTO;
+import com.ecommerce.ecommerce.payload.CartItemDTO;
+import com.ecommerce.ecommerce.payload.ProductDTO;
+import com.ecommerce.ecommerce.search.ProductDocument;
+import com.ecommerce.ecommerce.search.ProductSearchIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+//Guest carts are validated against the in-memory catalog on every change and priced from it on every read,
+//so they need no database access until they are merged at sign-in
+@Service
+public class GuestCartServiceImpl implements GuestCartService {
+
+    @Autowired
+    private GuestCartTokens guestCartTokens;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Value("${cart.guest.max-lines:50}")
+    private int maxLines;
+
+    @Override
+    public CartDTO getCart(String token) {
+        return toCartDTO(guestCartTokens.decode(token));
+    }
+
+    @Override
+    public GuestCart addProductToCart(String token, Long productId, Integer quantity) {
+        SortedMap<Long, Integer> lines = guestCartTokens.decode(token);
+        ProductDocument product = catalogProduct(productId);
+        if (lines.containsKey(productId)) {
+            throw new APIException("Product " + product.getProductName() + " already exists in the cart");
+        }
+        if (product.getQuantity() == 0) {
+            throw new APIException(product.getProductName() + " is not available");
+        }
+        if (product.getQuantity() < quantity) {
+            throw new APIException("Please, make an order of the " + product.getProductName()
+                    + " less than or equal to the quantity " + product.getQuantity() + ".");
+        }
+        if (quantity <= 0) {
+            throw new APIException("Quantity must be greater than zero");
+        }
+        if (lines.size() >= maxLines) {
+            throw new APIException("A guest cart can hold at most " + maxLines + " products, please sign in to add more");
+        }
+        lines.put(productId, quantity);
+        return guestCart(lines);
+    }
+
+    @Override
+    public GuestCart updateProductQuantityInCart(String token, Long productId, int quantity) {
+        SortedMap<Long, Integer> lines = guestCartTokens.decode(token);
+        ProductDocument product = catalogProduct(productId);
+        if (product.getQuantity() < quantity) {
+            throw new APIException("Please, make an order of the " + product.getProductName()
+                    + " less than or equal to the quantity " + product.getQuantity() + ".");
+        }
+        Integer current = lines.get(productId);
+        if (current == null) {
+            throw new APIException("Product " + product.getProductName() + " does not exist in the cart");
+        }
+        int newQuantity = current + quantity;
+        if (newQuantity < 0) {
+            throw new APIException("Quantity cannot be negative");
+        }
+        if (newQuantity == 0) {
+            lines.remove(productId);
+        } else {
+            lines.put(productId, newQuantity);
+        }
+        return guestCart(lines);
+    }
+
+    @Override
+    public GuestCart deleteProductFromCart(String token, Long productId) {
+        SortedMap<Long, Integer> lines = guestCartTokens.decode(token);
+        if (lines.remove(productId) == null) {
+            throw new ResourceNotFoundException("Product", "productId", productId);
+        }
+        return guestCart(lines);
+    }
+
+    @Override
+    public List<CartItemDTO> getCartItems(String token) {
+        return guestCartTokens.decode(token).entrySet().stream()
+                .map(line -> new CartItemDTO(line.getKey(), line.getValue()))
+                .toList();
+    }
+
+    private GuestCart guestCart(SortedMap<Long, Integer> lines) {
+        return new GuestCart(guestCartTokens.encode(lines), toCartDTO(lines));
+    }
+
+    private ProductDocument catalogProduct(Long productId) {
+        ProductDocument product = productSearchIndex.get(productId);
+        if (product == null) {
+            throw new ResourceNotFoundException("Product", "productId", productId);
+        }
+        return product;
+    }
+
+    //current catalog prices; lines of products deleted since are left out
+    private CartDTO toCartDTO(SortedMap<Long, Integer> lines) {
+        CartDTO cartDTO = new CartDTO();
+        double totalPrice = 0.0;
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            ProductDocument product = productSearchIndex.get(line.getKey());
+            if (product == null) {
+                continue;
+            }
+            ProductDTO productDTO = product.toProductDTO();
+            productDTO.setQuantity(line.getValue());
+            cartDTO.getProducts().add(productDTO);
+            totalPrice += product.getSpecialPrice() * line.getValue();
+        }
+        cartDTO.setTotalPrice(totalPrice);
+        return cartDTO;
+    }
+}
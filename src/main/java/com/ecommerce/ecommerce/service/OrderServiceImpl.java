@@ -1,21 +1,31 @@
 package com.ecommerce.ecommerce.service;
 
+import com.ecommerce.ecommerce.events.OrderPlacedEvent;
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
 import com.ecommerce.ecommerce.exceptions.APIException;
 import com.ecommerce.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.ecommerce.mapper.OrderMapper;
 import com.ecommerce.ecommerce.model.*;
 import com.ecommerce.ecommerce.payload.OrderDTO;
-import com.ecommerce.ecommerce.payload.OrderItemDTO;
 import com.ecommerce.ecommerce.repositories.*;
 import com.ecommerce.ecommerce.util.AuthUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import org.aspectj.weaver.ast.Or;
-import org.modelmapper.ModelMapper;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderServiceImpl implements OrderService {
@@ -38,7 +48,10 @@ public class OrderServiceImpl implements OrderService {
     CartService cartService;
 
     @Autowired
-    ModelMapper modelMapper;
+    CartItemRepository cartItemRepository;
+
+    @Autowired
+    OrderMapper orderMapper;
 
     @Autowired
     ProductRepository productRepository;
@@ -46,17 +59,44 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     AuthUtil authUtil;
 
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Override
     @Transactional
     public OrderDTO placeOrder(String emailId, Long addressId, String paymentMethod, String pgName, String pgPaymentId, String pgStatus, String pgResponseMessage) {
-        Cart cart = cartRepository.findCartByEmail(emailId);
+        cartService.flushCart(emailId);
+        Cart cart = cartRepository.findCartWithItemsByEmail(emailId);
         if (cart == null) {
             throw new ResourceNotFoundException("Cart", "email", emailId);
         }
 
+        List<CartItem> cartItems = cart.getCartItems();
+        if (cartItems.isEmpty()) {
+            throw new APIException("Cart is empty");
+        }
+
         Address address = addressRepository.findById(addressId)
                 .orElseThrow(() -> new ResourceNotFoundException("Address", "addressId", addressId));
 
+        //stock is taken before anything is written, in one batch of conditional decrements; a short line fails the
+        //whole order and the rollback gives back what the other lines took. A replaced cart can hold a product on
+        //more than one line, its quantities are added up
+        Map<Long, Product> products = cartItems.stream()
+                .map(CartItem::getProduct)
+                .collect(Collectors.toMap(Product::getProductId, Function.identity(), (first, second) -> first));
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        cartItems.forEach(item -> quantities.merge(item.getProduct().getProductId(), item.getQuantity(), Integer::sum));
+        List<Long> shortProductIds = productRepository.decrementStock(quantities);
+        if (!shortProductIds.isEmpty()) {
+            throw new APIException("Not enough stock left for " + shortProductIds.stream()
+                    .map(productId -> products.get(productId).getProductName())
+                    .collect(Collectors.joining(", ")));
+        }
+
         Order order = new Order();
         order.setEmail(emailId);
         order.setOrderDate(LocalDate.now());
@@ -71,11 +111,6 @@ public class OrderServiceImpl implements OrderService {
 
         Order savedOrder = orderRepository.save(order);
 
-        List<CartItem> cartItems = cart.getCartItems();
-        if (cartItems.isEmpty()) {
-            throw new APIException("Cart is empty");
-        }
-
         List<OrderItem> orderItems = new ArrayList<>();
         for(CartItem cartItem : cartItems) {
             OrderItem orderItem = new OrderItem();
@@ -87,24 +122,25 @@ public class OrderServiceImpl implements OrderService {
             orderItems.add(orderItem);
         }
         orderItems = orderItemRepository.saveAll(orderItems);
-
-        //Post order -> update product stock and clear cart
-        cart.getCartItems().forEach(item -> {
-            int quantity = item.getQuantity();
-            Product product = item.getProduct();
-
-            // Reduce stock quantity
-            product.setQuantity(product.getQuantity() - quantity);
-
-            // Save product back to the database
-            productRepository.save(product);
-
-            // Remove items from cart
-            cartService.deleteProductFromCart(cart.getCartId(), item.getProduct().getProductId());
+        eventPublisher.publishEvent(new OrderPlacedEvent(savedOrder.getId(),
+                orderItems.stream().map(item -> item.getProduct().getProductId()).toList()));
+
+        //Post order -> publish the stock left, read back under the row locks the decrements hold; the products are
+        //made read-only first so the new quantity is not written over the decremented one
+        Session session = entityManager.unwrap(Session.class);
+        productRepository.findQuantities(quantities.keySet()).forEach(row -> {
+            Product product = products.get((Long) row[0]);
+            session.setReadOnly(product, true);
+            product.setQuantity((Integer) row[1]);
+            eventPublisher.publishEvent(ProductChangedEvent.of(product, ProductChangedEvent.ChangeType.STOCK_UPDATED));
         });
 
-        OrderDTO orderDTO = modelMapper.map(savedOrder, OrderDTO.class);
-        orderItems.forEach(item -> orderDTO.getOrderItems().add(modelMapper.map(item, OrderItemDTO.class)));
+        //clear cart in one statement
+        cartItemRepository.deleteAllByCartId(cart.getCartId());
+        cart.setTotalPrice(0.0);
+
+        OrderDTO orderDTO = orderMapper.toOrderDTO(savedOrder);
+        orderItems.forEach(item -> orderDTO.getOrderItems().add(orderMapper.toOrderItemDTO(item)));
 
         orderDTO.setAddressId(addressId);
 
@@ -0,0 +1,11 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.payload.ProductImportResponse;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ProductImportService {
+    ProductImportResponse importProducts(InputStream body, MediaType contentType, Long defaultCategoryId) throws IOException;
+}
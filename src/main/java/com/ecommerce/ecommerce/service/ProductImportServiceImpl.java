@@ -0,0 +1,333 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.events.ProductsImportedEvent;
+import com.ecommerce.ecommerce.exceptions.APIException;
+import com.ecommerce.ecommerce.model.Category;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.payload.ImportRowError;
+import com.ecommerce.ecommerce.payload.ProductImportResponse;
+import com.ecommerce.ecommerce.payload.ProductImportRow;
+import com.ecommerce.ecommerce.repositories.CategoryRepository;
+import com.ecommerce.ecommerce.repositories.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//Streams an import body line by line and writes it in chunks: each chunk is checked for existing names with one
+//query and inserted in one transaction with JDBC batching, so memory stays bounded by the chunk size
+@Service
+public class ProductImportServiceImpl implements ProductImportService {
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final Set<String> CSV_COLUMNS = Set.of("productname", "description", "image", "quantity",
+            "price", "discount", "categoryid", "categoryname");
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${catalog.import.batch-size:500}")
+    private int batchSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public ProductImportResponse importProducts(InputStream body, MediaType contentType, Long defaultCategoryId) throws IOException {
+        boolean csv = contentType != null && TEXT_CSV.isCompatibleWith(contentType);
+        boolean ndjson = contentType != null && MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType);
+        if (!csv && !ndjson) {
+            throw new APIException("Bulk import accepts text/csv or application/x-ndjson bodies");
+        }
+        Map<Long, Category> categoriesById = new HashMap<>();
+        Map<String, Category> categoriesByName = new HashMap<>();
+        categoryRepository.findAll().forEach(category -> {
+            categoriesById.put(category.getCategoryId(), category);
+            categoriesByName.put(category.getCategoryName().toLowerCase(Locale.ROOT), category);
+        });
+        Category defaultCategory = null;
+        if (defaultCategoryId != null) {
+            defaultCategory = categoriesById.get(defaultCategoryId);
+            if (defaultCategory == null) {
+                throw new APIException("Category with id " + defaultCategoryId + " not found !!!");
+            }
+        }
+
+        Import state = new Import(categoriesById, categoriesByName, defaultCategory);
+        long start = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            Map<String, Integer> header = null;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && header == null) {
+                    header = csvHeader(line);
+                    continue;
+                }
+                state.response.setRowsRead(state.response.getRowsRead() + 1);
+                try {
+                    ProductImportRow row = csv ? csvRow(header, line) : objectMapper.readValue(line, ProductImportRow.class);
+                    state.accept(lineNumber, row);
+                } catch (JsonProcessingException e) {
+                    state.fail(lineNumber, null, "Malformed JSON: " + e.getOriginalMessage());
+                } catch (IllegalArgumentException e) {
+                    state.fail(lineNumber, null, e.getMessage());
+                }
+                if (state.chunk.size() >= batchSize) {
+                    writeChunk(state);
+                }
+            }
+        }
+        writeChunk(state);
+
+        ProductImportResponse response = state.response;
+        long elapsedNanos = System.nanoTime() - start;
+        response.setElapsedMillis(elapsedNanos / 1_000_000);
+        response.setRowsPerSecond(elapsedNanos > 0 ? response.getRowsImported() * 1e9 / elapsedNanos : 0.0);
+        return response;
+    }
+
+    private void writeChunk(Import state) {
+        if (state.chunk.isEmpty()) {
+            return;
+        }
+        List<PendingProduct> chunk = state.chunk;
+        state.chunk = new ArrayList<>();
+        state.chunkNames.clear();
+
+        //one IN query per chunk instead of existsByProductName per row, compared the way the default collation does
+        Set<String> existing = productRepository.findExistingProductNames(
+                        chunk.stream().map(pending -> pending.product().getProductName()).toList())
+                .stream()
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        List<PendingProduct> inserts = new ArrayList<>();
+        for (PendingProduct pending : chunk) {
+            if (existing.contains(pending.product().getProductName().toLowerCase(Locale.ROOT))) {
+                state.fail(pending.line(), pending.product().getProductName(), "Product with this name already exists");
+            } else {
+                inserts.add(pending);
+            }
+        }
+        if (inserts.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                inserts.forEach(pending -> entityManager.persist(pending.product()));
+                entityManager.flush();
+                //one event for the chunk, listeners invalidate and bump once instead of once per row
+                eventPublisher.publishEvent(new ProductsImportedEvent(
+                        inserts.stream().map(PendingProduct::product).toList()));
+                entityManager.clear();
+            });
+            state.response.setRowsImported(state.response.getRowsImported() + inserts.size());
+            state.response.setBatches(state.response.getBatches() + 1);
+        } catch (DataAccessException | PersistenceException e) {
+            String message = "Batch insert failed: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            inserts.forEach(pending -> state.fail(pending.line(), pending.product().getProductName(), message));
+        }
+    }
+
+    private static Map<String, Integer> csvHeader(String line) {
+        List<String> columns = parseCsvLine(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i).trim().toLowerCase(Locale.ROOT);
+            if (!CSV_COLUMNS.contains(column)) {
+                throw new APIException("Unknown CSV column " + columns.get(i));
+            }
+            header.put(column, i);
+        }
+        if (!header.containsKey("productname") || !header.containsKey("price")) {
+            throw new APIException("CSV header needs at least productName and price columns");
+        }
+        return header;
+    }
+
+    private static ProductImportRow csvRow(Map<String, Integer> header, String line) {
+        List<String> fields = parseCsvLine(line);
+        ProductImportRow row = new ProductImportRow();
+        row.setProductName(field(header, fields, "productname"));
+        row.setDescription(field(header, fields, "description"));
+        row.setImage(field(header, fields, "image"));
+        row.setCategoryName(field(header, fields, "categoryname"));
+        try {
+            String quantity = field(header, fields, "quantity");
+            row.setQuantity(quantity != null ? Integer.valueOf(quantity.trim()) : null);
+            String price = field(header, fields, "price");
+            row.setPrice(price != null ? Double.valueOf(price.trim()) : null);
+            String discount = field(header, fields, "discount");
+            row.setDiscount(discount != null ? Double.valueOf(discount.trim()) : null);
+            String categoryId = field(header, fields, "categoryid");
+            row.setCategoryId(categoryId != null ? Long.valueOf(categoryId.trim()) : null);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed number: " + e.getMessage());
+        }
+        return row;
+    }
+
+    private static String field(Map<String, Integer> header, List<String> fields, String column) {
+        Integer index = header.get(column);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    //RFC 4180 fields within a single line: commas separate, double quotes wrap, "" escapes a quote
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private record PendingProduct(long line, Product product) {
+    }
+
+    //per-request state: category lookups, the open chunk with its names and the report. Names are only remembered
+    //for the open chunk, so memory stays bounded by the chunk size: earlier chunks are committed by then, and a repeat
+    //of one of their names is found by this chunk's existing-name query
+    private static class Import {
+        private final Map<Long, Category> categoriesById;
+        private final Map<String, Category> categoriesByName;
+        private final Category defaultCategory;
+        private final Set<String> chunkNames = new HashSet<>();
+        private final ProductImportResponse response = new ProductImportResponse();
+        private List<PendingProduct> chunk = new ArrayList<>();
+
+        private Import(Map<Long, Category> categoriesById, Map<String, Category> categoriesByName, Category defaultCategory) {
+            this.categoriesById = categoriesById;
+            this.categoriesByName = categoriesByName;
+            this.defaultCategory = defaultCategory;
+        }
+
+        private void accept(long line, ProductImportRow row) {
+            String productName = row.getProductName() != null ? row.getProductName().trim() : null;
+            if (productName == null || productName.length() < 3) {
+                fail(line, productName, "Product name must be at least 3 characters long");
+                return;
+            }
+            if (row.getPrice() == null || row.getPrice() < 0) {
+                fail(line, productName, "Price is required and may not be negative");
+                return;
+            }
+            double discount = row.getDiscount() != null ? row.getDiscount() : 0.0;
+            if (discount < 0 || discount > 100) {
+                fail(line, productName, "Discount must be between 0 and 100");
+                return;
+            }
+            int quantity = row.getQuantity() != null ? row.getQuantity() : 0;
+            if (quantity < 0) {
+                fail(line, productName, "Quantity may not be negative");
+                return;
+            }
+            Category category = row.getCategoryId() != null ? categoriesById.get(row.getCategoryId())
+                    : row.getCategoryName() != null ? categoriesByName.get(row.getCategoryName().trim().toLowerCase(Locale.ROOT))
+                    : defaultCategory;
+            if (category == null) {
+                fail(line, productName, "Category not found");
+                return;
+            }
+            if (!chunkNames.add(productName.toLowerCase(Locale.ROOT))) {
+                fail(line, productName, "Duplicate productName in this import");
+                return;
+            }
+
+            Product product = new Product();
+            product.setProductName(productName);
+            product.setDescription(row.getDescription());
+            product.setImage(row.getImage() != null ? row.getImage() : "default.png");
+            product.setQuantity(quantity);
+            product.setPrice(row.getPrice());
+            product.setDiscount(discount);
+            product.setSpecialPrice(row.getPrice() - (row.getPrice() * discount / 100));
+            product.setCategory(category);
+            chunk.add(new PendingProduct(line, product));
+        }
+
+        private void fail(long line, String productName, String message) {
+            response.setRowsFailed(response.getRowsFailed() + 1);
+            if (response.getErrors().size() < MAX_REPORTED_ERRORS) {
+                response.getErrors().add(new ImportRowError(line, productName, message));
+            } else {
+                response.setErrorsTruncated(true);
+            }
+        }
+    }
+}
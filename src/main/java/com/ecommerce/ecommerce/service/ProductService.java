@@ -2,16 +2,28 @@ package com.ecommerce.ecommerce.service;
 
 import com.ecommerce.ecommerce.payload.ProductDTO;
 import com.ecommerce.ecommerce.payload.ProductResponse;
+import com.ecommerce.ecommerce.payload.SuggestionDTO;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface ProductService {
     ProductDTO addProduct(Long categoryId, ProductDTO productDTO);
-    ProductResponse getAllProducts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder, String keyword, String category);
-    ProductResponse getAllProductsByCategory(Long categoryId, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder);
+    ProductResponse getAllProducts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder, String keyword, String category,
+                                   String cursor, boolean includeCount, boolean includeFacets);
+    ProductResponse getAllProductsByCategory(Long categoryId, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder,
+                                             String cursor, boolean includeCount);
     ProductResponse getAllProductsByKeyword(String keyword, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder);
 
+    List<SuggestionDTO> suggest(String prefix, Integer limit);
+
+    List<ProductDTO> getTrendingProducts(Long categoryId, Integer limit);
+
+    List<ProductDTO> getRecommendations(Long productId, Integer limit);
+
+    void rebuildRecommendations();
+
     ProductDTO updateProduct(Long productId, ProductDTO productDTO);
 
     ProductDTO deleteProduct(Long productId);
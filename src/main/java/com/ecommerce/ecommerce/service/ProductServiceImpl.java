@@ -1,35 +1,57 @@
 package com.ecommerce.ecommerce.service;
 
+import com.ecommerce.ecommerce.cache.CatalogCache;
+import com.ecommerce.ecommerce.config.AppConstants;
+import com.ecommerce.ecommerce.events.ListingImageChangedEvent;
+import com.ecommerce.ecommerce.events.ProductChangedEvent;
 import com.ecommerce.ecommerce.exceptions.APIException;
 import com.ecommerce.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.ecommerce.mapper.ProductMapper;
 import com.ecommerce.ecommerce.model.Cart;
 import com.ecommerce.ecommerce.model.Category;
 import com.ecommerce.ecommerce.model.Product;
-import com.ecommerce.ecommerce.payload.CartDTO;
 import com.ecommerce.ecommerce.payload.ProductDTO;
 import com.ecommerce.ecommerce.payload.ProductResponse;
+import com.ecommerce.ecommerce.payload.SuggestionDTO;
 import com.ecommerce.ecommerce.repositories.CartRepository;
 import com.ecommerce.ecommerce.repositories.CategoryRepository;
 import com.ecommerce.ecommerce.repositories.ProductRepository;
-import org.modelmapper.ModelMapper;
+import com.ecommerce.ecommerce.repositories.ProductView;
+import com.ecommerce.ecommerce.search.AutocompleteIndex;
+import com.ecommerce.ecommerce.search.CoPurchaseIndex;
+import com.ecommerce.ecommerce.search.PopularityTracker;
+import com.ecommerce.ecommerce.search.ProductDocument;
+import com.ecommerce.ecommerce.search.ProductFacetIndex;
+import com.ecommerce.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.ecommerce.search.SearchResult;
+import com.ecommerce.ecommerce.search.SearchTokenizer;
+import com.ecommerce.ecommerce.util.PageCursor;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Service
 public class ProductServiceImpl implements ProductService {
     @Autowired
-    private ModelMapper modelMapper;
+    private ProductMapper productMapper;
 
     @Autowired
     CategoryRepository categoryRepository;
@@ -46,6 +68,27 @@ public class ProductServiceImpl implements ProductService {
     @Autowired
     CartService cartService;
 
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Autowired
+    private AutocompleteIndex autocompleteIndex;
+
+    @Autowired
+    private PopularityTracker popularityTracker;
+
+    @Autowired
+    private CoPurchaseIndex coPurchaseIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
     @Value("${project.image}")
     private String path;
 
@@ -61,119 +104,258 @@ public class ProductServiceImpl implements ProductService {
         if (ifProductExists) {
             throw new APIException("Product with name " + productDTO.getProductName() + " already exists !!!");
         }
-        Product product = modelMapper.map(productDTO, Product.class);
+        Product product = productMapper.toProduct(productDTO);
         product.setImage("default.png");
         product.setCategory(category);
         double specialPrice = product.getPrice() - (product.getPrice() * product.getDiscount() / 100);
         product.setSpecialPrice(specialPrice);
         Product savedProduct = productRepository.save(product);
-        return modelMapper.map(savedProduct, ProductDTO.class);
+        eventPublisher.publishEvent(ProductChangedEvent.of(savedProduct, ProductChangedEvent.ChangeType.CREATED));
+        return productMapper.toProductDTO(savedProduct);
     }
 
     @Override
-    public ProductResponse getAllProducts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder, String keyword, String category) {
-        Sort sortByandOrder = sortOrder.equalsIgnoreCase("asc")
-                ? Sort.by(sortBy).ascending()
-                : Sort.by(sortBy).descending();
-        Pageable pageable = PageRequest.of(pageNumber, pageSize, sortByandOrder);
-        Specification<Product> spec = Specification.where(null);
-        if (keyword != null && !keyword.isEmpty()) {
-            spec = spec.and((root, query, criteriaBuilder) ->
-                    criteriaBuilder.like(criteriaBuilder.lower(root.get("productName")), "%" + keyword.toLowerCase() + "%"));
+    public ProductResponse getAllProducts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder, String keyword, String category,
+                                          String cursor, boolean includeCount, boolean includeFacets) {
+        boolean keywordSearch = keyword != null && !keyword.isBlank();
+        String sortField = sortBy != null ? sortBy
+                : keywordSearch ? AppConstants.SORT_RELEVANCE : AppConstants.SORT_PRODUCTS_BY;
+        String key = CatalogCache.key("products",
+                keywordSearch ? String.join(" ", new TreeSet<>(SearchTokenizer.tokenize(keyword))) : null,
+                category != null ? category.toLowerCase(Locale.ROOT) : null,
+                pageNumber, pageSize, sortField, sortOrder.toLowerCase(Locale.ROOT), cursor, includeCount, includeFacets);
+        return catalogCache.get(key,
+                () -> {
+                    ProductResponse productResponse = findAllProducts(pageNumber, pageSize, sortBy, sortOrder, keyword, category,
+                            cursor, includeCount);
+                    if (includeFacets) {
+                        productResponse.setFacets(productFacetIndex.facets(category,
+                                keywordSearch ? productSearchIndex.matchingIds(keyword, category) : null));
+                    }
+                    return productResponse;
+                },
+                CatalogCache.productQueryTags(null, category, keywordSearch, sortField, includeFacets));
+    }
+
+    private ProductResponse findAllProducts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder, String keyword, String category,
+                                            String cursor, boolean includeCount) {
+        if (keyword != null && !keyword.isBlank()) {
+            SearchResult result = cursor != null
+                    ? productSearchIndex.searchAfter(keyword, category, decodeCursor(cursor), pageSize, sortBy, sortOrder)
+                    : productSearchIndex.search(keyword, category, pageNumber, pageSize, sortBy, sortOrder);
+            if (result.getDocuments().isEmpty()) {
+                throw new APIException("No products available currently.");
+            }
+            return toProductResponse(result, true, cursor != null);
+        }
+        if (sortBy == null) {
+            sortBy = AppConstants.SORT_PRODUCTS_BY;
         }
+        Specification<Product> spec = Specification.where(null);
         if (category != null && !category.isEmpty()) {
             spec = spec.and((root, query, criteriaBuilder) ->
                     criteriaBuilder.equal(root.get("category").get("categoryName"), category));
         }
+        if (cursor != null) {
+            ProductResponse productResponse = findProductsAfter(spec, cursor, pageSize, null, sortBy, sortOrder, includeCount,
+                    true);
+            if (productResponse.getProducts().isEmpty()) {
+                throw new APIException("No products available currently.");
+            }
+            return productResponse;
+        }
 
-
-        Page<Product> pageProducts = productRepository.findAll(spec, pageable);
-        List<Product> products = pageProducts.getContent();
-//        List<Product> products = productRepository.findAll();
-        if (products.isEmpty()) {
+        Sort sortByandOrder = sortOrder.equalsIgnoreCase("asc")
+                ? Sort.by(sortBy).ascending()
+                : Sort.by(sortBy).descending();
+        Pageable pageable = PageRequest.of(pageNumber, pageSize, sortByandOrder);
+        Slice<ProductView> pageProducts = productRepository.findViews(spec, pageable, includeCount);
+        if (pageProducts.getContent().isEmpty()) {
             throw new APIException("No products available currently.");
         }
-        List<ProductDTO> productDTOs = products.stream()
-                .map(product -> {
-                    ProductDTO productDTO = modelMapper.map(product, ProductDTO.class);
-                    productDTO.setImage(constructImageUrl(product.getImage()));
-                    return productDTO;
-                })
-                .toList();
-        ProductResponse productResponse = new ProductResponse();
-        productResponse.setProducts(productDTOs);
-        productResponse.setPageNumber(pageProducts.getNumber());
-        productResponse.setPageSize(pageProducts.getSize());
-        productResponse.setTotalElements(pageProducts.getTotalElements());
-        productResponse.setTotalPages(pageProducts.getTotalPages());
-        productResponse.setLastPage(pageProducts.isLast());
-
-        return productResponse;
+        return toProductResponse(pageProducts, true);
     }
 
+    //listing tiles link the thumbnail once it has been generated, cached pages pick it up when they are next rebuilt
     private String constructImageUrl(String imageName) {
-        return imageBaseUrl.endsWith("/") ? imageBaseUrl + imageName : imageBaseUrl + "/" + imageName;
+        String listingImage = fileService.listingImage(imageName);
+        return imageBaseUrl.endsWith("/") ? imageBaseUrl + listingImage : imageBaseUrl + "/" + listingImage;
     }
 
     @Override
-    public ProductResponse getAllProductsByCategory(Long categoryId, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
-        Category category = categoryRepository.findById(categoryId)
-                .orElseThrow(() -> new APIException("Category with id " + categoryId + " not found !!!"));
+    public ProductResponse getAllProductsByCategory(Long categoryId, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder,
+                                                    String cursor, boolean includeCount) {
+        String key = CatalogCache.key("category-products", categoryId,
+                pageNumber, pageSize, sortBy, sortOrder.toLowerCase(Locale.ROOT), cursor, includeCount);
+        return catalogCache.get(key,
+                () -> findAllProductsByCategory(categoryId, pageNumber, pageSize, sortBy, sortOrder, cursor, includeCount),
+                CatalogCache.productQueryTags(categoryId, null, false, sortBy, false));
+    }
 
-        Sort sortByandOrder = sortOrder.equalsIgnoreCase("asc")
+    private ProductResponse findAllProductsByCategory(Long categoryId, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder,
+                                                      String cursor, boolean includeCount) {
+        if (!categoryRepository.existsById(categoryId)) {
+            throw new APIException("Category with id " + categoryId + " not found !!!");
+        }
+
+        Specification<Product> spec = (root, query, criteriaBuilder) ->
+                criteriaBuilder.equal(root.get("category").get("categoryId"), categoryId);
+        //category listings are ordered by price first, the requested sort only breaks ties
+        if (cursor != null) {
+            ProductResponse productResponse = findProductsAfter(spec, cursor, pageSize, "price", sortBy, sortOrder,
+                    includeCount, false);
+            if (productResponse.getProducts().isEmpty()) {
+                throw new APIException("No products available in this category currently.");
+            }
+            return productResponse;
+        }
+
+        Sort sortByandOrder = Sort.by("price").ascending().and(sortOrder.equalsIgnoreCase("asc")
                 ? Sort.by(sortBy).ascending()
-                : Sort.by(sortBy).descending();
+                : Sort.by(sortBy).descending());
 
-//        List<Product> products = productRepository.findByCategory(category);
         Pageable pageable = PageRequest.of(pageNumber, pageSize, sortByandOrder);
-        Page<Product> pageProducts = productRepository.findByCategoryOrderByPriceAsc(category, pageable);
-        List<Product> products = pageProducts.getContent();
-        if (products.isEmpty()) {
+        Slice<ProductView> pageProducts = productRepository.findViews(spec, pageable, includeCount);
+        if (pageProducts.getContent().isEmpty()) {
             throw new APIException("No products available in this category currently.");
         }
-        List<ProductDTO> productDTOs = products.stream()
-                .map(product -> modelMapper.map(product, ProductDTO.class))
-                .toList();
-        ProductResponse productResponse = new ProductResponse();
-        productResponse.setProducts(productDTOs);
-        productResponse.setPageNumber(pageProducts.getNumber());
-        productResponse.setPageSize(pageProducts.getSize());
-        productResponse.setTotalElements(pageProducts.getTotalElements());
-        productResponse.setTotalPages(pageProducts.getTotalPages());
-        productResponse.setLastPage(pageProducts.isLast());
-        return productResponse;
+        return toProductResponse(pageProducts, false);
     }
 
     @Override
     public ProductResponse getAllProductsByKeyword(String keyword, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
-        Sort sortByandOrder = sortOrder.equalsIgnoreCase("asc")
-                ? Sort.by(sortBy).ascending()
-                : Sort.by(sortBy).descending();
-        Pageable pageable = PageRequest.of(pageNumber, pageSize, sortByandOrder);
-
-        Page<Product> pageProducts = productRepository.findByProductNameLikeIgnoreCase('%' + keyword + '%', pageable);
-        List<Product> products = pageProducts.getContent();
-        if (products.isEmpty()) {
+        SearchResult result = productSearchIndex.search(keyword, null, pageNumber, pageSize, sortBy, sortOrder);
+        if (result.getDocuments().isEmpty()) {
             throw new APIException("No products found with the keyword: " + keyword);
         }
-        List<ProductDTO> productDTOs = products.stream()
-                .map(product -> modelMapper.map(product, ProductDTO.class))
+        return toProductResponse(result, false, false);
+    }
+
+    @Override
+    public List<SuggestionDTO> suggest(String prefix, Integer limit) {
+        return autocompleteIndex.suggest(prefix, limit);
+    }
+
+    @Override
+    public List<ProductDTO> getTrendingProducts(Long categoryId, Integer limit) {
+        return toProductDTOs(popularityTracker.trending(categoryId, limit));
+    }
+
+    @Override
+    public List<ProductDTO> getRecommendations(Long productId, Integer limit) {
+        if (productSearchIndex.get(productId) == null) {
+            throw new ResourceNotFoundException("Product", "productId", productId);
+        }
+        return toProductDTOs(coPurchaseIndex.recommendations(productId, limit));
+    }
+
+    @Override
+    public void rebuildRecommendations() {
+        coPurchaseIndex.rebuild();
+    }
+
+    private List<ProductDTO> toProductDTOs(List<ProductDocument> documents) {
+        return documents.stream()
+                .map(document -> {
+                    ProductDTO productDTO = document.toProductDTO();
+                    productDTO.setImage(constructImageUrl(document.getImage()));
+                    return productDTO;
+                })
                 .toList();
+    }
+
+    //keyset page: seeks past the cursor row instead of skipping OFFSET rows, one extra row tells whether more follow.
+    //leadingBy, when given, orders the rows ascending ahead of sortBy
+    private ProductResponse findProductsAfter(Specification<Product> spec, String cursor, Integer pageSize, String leadingBy,
+                                              String sortBy, String sortOrder, boolean includeCount, boolean imageUrls) {
+        boolean ascending = sortOrder.equalsIgnoreCase("asc");
+        Specification<Product> seek = spec;
+        PageCursor pageCursor = decodeCursor(cursor);
+        if (pageCursor != null) {
+            pageCursor.verify(leadingBy, sortBy, ascending);
+            seek = spec.and(pageCursor.toSpecification("productId"));
+        }
+        Sort sort = PageCursor.sort(leadingBy, sortBy, ascending, "productId");
+        List<ProductView> rows = productRepository.findViews(seek, sort, pageSize + 1);
+        boolean lastPage = rows.size() <= pageSize;
+        List<ProductView> products = lastPage ? rows : rows.subList(0, pageSize);
+
         ProductResponse productResponse = new ProductResponse();
-        productResponse.setProducts(productDTOs);
+        productResponse.setProducts(toProductDTOs(products, imageUrls));
+        productResponse.setPageSize(pageSize);
+        productResponse.setLastPage(lastPage);
+        if (!lastPage) {
+            ProductView last = products.get(products.size() - 1);
+            productResponse.setNextCursor(PageCursor.after(last, leadingBy, sortBy, ascending, "productId")
+                    .encode());
+        }
+        if (includeCount) {
+            long totalElements = productRepository.count(spec);
+            productResponse.setTotalElements(totalElements);
+            productResponse.setTotalPages((int) Math.ceil((double) totalElements / pageSize));
+        }
+        return productResponse;
+    }
+
+    //an empty cursor starts cursor paging from the first row
+    private PageCursor decodeCursor(String cursor) {
+        return cursor == null || cursor.isEmpty() ? null : PageCursor.decode(cursor);
+    }
+
+    private List<ProductDTO> toProductDTOs(List<ProductView> products, boolean imageUrls) {
+        return products.stream()
+                .map(product -> {
+                    ProductDTO productDTO = productMapper.toProductDTO(product);
+                    if (imageUrls) {
+                        productDTO.setImage(constructImageUrl(product.getImage()));
+                    }
+                    return productDTO;
+                })
+                .toList();
+    }
+
+    //count-free slices leave totalElements and totalPages empty
+    private ProductResponse toProductResponse(Slice<ProductView> pageProducts, boolean imageUrls) {
+        ProductResponse productResponse = new ProductResponse();
+        productResponse.setProducts(toProductDTOs(pageProducts.getContent(), imageUrls));
         productResponse.setPageNumber(pageProducts.getNumber());
         productResponse.setPageSize(pageProducts.getSize());
-        productResponse.setTotalElements(pageProducts.getTotalElements());
-        productResponse.setTotalPages(pageProducts.getTotalPages());
+        if (pageProducts instanceof Page<ProductView> page) {
+            productResponse.setTotalElements(page.getTotalElements());
+            productResponse.setTotalPages(page.getTotalPages());
+        }
         productResponse.setLastPage(pageProducts.isLast());
         return productResponse;
     }
 
+    private ProductResponse toProductResponse(SearchResult result, boolean imageUrls, boolean cursorPaging) {
+        List<ProductDTO> productDTOs = result.getDocuments().stream()
+                .map(document -> {
+                    ProductDTO productDTO = document.toProductDTO();
+                    if (imageUrls) {
+                        productDTO.setImage(constructImageUrl(document.getImage()));
+                    }
+                    return productDTO;
+                })
+                .toList();
+        ProductResponse productResponse = new ProductResponse();
+        productResponse.setProducts(productDTOs);
+        productResponse.setPageNumber(cursorPaging ? null : result.getPageNumber());
+        productResponse.setPageSize(result.getPageSize());
+        productResponse.setTotalElements(result.getTotalElements());
+        productResponse.setTotalPages(result.getTotalPages());
+        productResponse.setLastPage(cursorPaging ? result.getNextCursor() == null : result.isLastPage());
+        productResponse.setNextCursor(result.getNextCursor());
+        return productResponse;
+    }
+
 
+    @Transactional
     @Override
     public ProductDTO updateProduct(Long productId, ProductDTO productDTO) {
         Product existingProduct = productRepository.findById(productId)
                 .orElseThrow(() -> new APIException("Product with id " + productId + " not found !!!"));
+        Set<String> changedFields = changedFields(existingProduct, productDTO);
         existingProduct.setProductName(productDTO.getProductName());
         existingProduct.setDescription(productDTO.getDescription());
         existingProduct.setPrice(productDTO.getPrice());
@@ -183,19 +365,32 @@ public class ProductServiceImpl implements ProductService {
         existingProduct.setQuantity(productDTO.getQuantity());
         Product updatedProduct = productRepository.save(existingProduct);
 
-        List<Cart> carts = cartRepository.findCartsByProductId(productId);
-
-        List<CartDTO> cartDTOs = carts.stream().map(cart -> {
-            CartDTO cartDTO = modelMapper.map(cart, CartDTO.class);
-            List<ProductDTO> products = cart.getCartItems().stream()
-                    .map(p -> modelMapper.map(p.getProduct(), ProductDTO.class)).collect(Collectors.toList());
-            cartDTO.setProducts(products);
-            return cartDTO;
-        }).collect(Collectors.toList());
+        if (changedFields.contains("specialPrice")) {
+            cartService.repriceProductInCarts(productId, specialPrice);
+        }
 
-        cartDTOs.forEach(cart -> cartService.updateProductInCarts(cart.getCartId(), productId));
+        eventPublisher.publishEvent(ProductChangedEvent.of(updatedProduct, ProductChangedEvent.ChangeType.UPDATED, changedFields));
+        return productMapper.toProductDTO(updatedProduct);
+    }
 
-        return modelMapper.map(updatedProduct, ProductDTO.class);
+    private Set<String> changedFields(Product product, ProductDTO productDTO) {
+        Set<String> changedFields = new HashSet<>();
+        if (!Objects.equals(product.getProductName(), productDTO.getProductName())) {
+            changedFields.add("productName");
+        }
+        if (!Objects.equals(product.getDescription(), productDTO.getDescription())) {
+            changedFields.add("description");
+        }
+        if (!Objects.equals(product.getQuantity(), productDTO.getQuantity())) {
+            changedFields.add("quantity");
+        }
+        if (product.getPrice() == null || product.getPrice() != productDTO.getPrice()
+                || product.getDiscount() != productDTO.getDiscount()) {
+            changedFields.add("price");
+            changedFields.add("discount");
+            changedFields.add("specialPrice");
+        }
+        return changedFields;
     }
 
     @Override
@@ -207,7 +402,8 @@ public class ProductServiceImpl implements ProductService {
         carts.forEach(cart -> cartService.deleteProductFromCart(cart.getCartId(), productId));
 
         productRepository.delete(existingProduct);
-        return modelMapper.map(existingProduct, ProductDTO.class);
+        eventPublisher.publishEvent(ProductChangedEvent.of(existingProduct, ProductChangedEvent.ChangeType.DELETED));
+        return productMapper.toProductDTO(existingProduct);
     }
 
     @Override
@@ -218,7 +414,16 @@ public class ProductServiceImpl implements ProductService {
         String imageName = fileService.uploadImage(path, image);
         existingProduct.setImage(imageName);
         Product updatedProduct = productRepository.save(existingProduct);
-        return modelMapper.map(updatedProduct, ProductDTO.class);
+        eventPublisher.publishEvent(ProductChangedEvent.of(updatedProduct, ProductChangedEvent.ChangeType.IMAGE_UPDATED));
+        return productMapper.toProductDTO(updatedProduct);
+    }
+
+    //a thumbnail written after the upload changes the image URL of every product showing that image, the catalog
+    //versions and cached pages have to follow like for a new image
+    @EventListener
+    public void onListingImageChanged(ListingImageChangedEvent event) {
+        productRepository.findAllByImage(event.getImageName()).forEach(product -> eventPublisher.publishEvent(
+                ProductChangedEvent.of(product, ProductChangedEvent.ChangeType.IMAGE_UPDATED)));
     }
 
 
@@ -0,0 +1,210 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.cart.ActiveCart;
+import com.ecommerce.ecommerce.cart.CartLine;
+import com.ecommerce.ecommerce.cart.CartStore;
+import com.ecommerce.ecommerce.exceptions.APIException;
+import com.ecommerce.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.ecommerce.payload.CartDTO;
+import com.ecommerce.ecommerce.payload.CartItemDTO;
+import com.ecommerce.ecommerce.payload.ProductDTO;
+import com.ecommerce.ecommerce.repositories.CartItemRepository;
+import com.ecommerce.ecommerce.search.PopularityTracker;
+import com.ecommerce.ecommerce.search.ProductDocument;
+import com.ecommerce.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.ecommerce.util.AuthUtil;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+//Cart operations against CartStore instead of the database, enabled with cart.write-behind.enabled.
+//Products are checked against the in-memory catalog; removing a line also deletes its row right away so database-side
+//product deletes never trip over it. Carts not held in memory go through the database implementation.
+@Service
+@Primary
+@ConditionalOnProperty(name = "cart.write-behind.enabled", havingValue = "true")
+public class WriteBehindCartServiceImpl implements CartService {
+
+    @Autowired
+    private CartServiceImpl databaseCartService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private AuthUtil authUtil;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private PopularityTracker popularityTracker;
+
+    @Override
+    public CartDTO addProductToCart(Long productId, Integer quantity) {
+        ProductDocument product = catalogProduct(productId);
+        CartDTO cartDTO = cartStore.apply(authUtil.loggedInUserEmail(), authUtil::getLoggedInUser, cart -> {
+            if (cart.getLine(productId) != null) {
+                throw new APIException("Product " + product.getProductName() + " already exists in the cart");
+            }
+            if (product.getQuantity() == 0) {
+                throw new APIException(product.getProductName() + " is not available");
+            }
+            if (product.getQuantity() < quantity) {
+                throw new APIException("Please, make an order of the " + product.getProductName()
+                        + " less than or equal to the quantity " + product.getQuantity() + ".");
+            }
+            cart.putLine(new CartLine(productId, quantity, product.getSpecialPrice(), product.getDiscount()));
+            return toCartDTO(cart);
+        });
+        popularityTracker.recordCartAdd(productId);
+        return cartDTO;
+    }
+
+    @Override
+    public CartDTO getCart(String emailId, Long cartId) {
+        return cartStore.applyIfActive(cartId, cart -> cart.getEmail().equals(emailId) ? toCartDTO(cart) : null)
+                .orElseGet(() -> databaseCartService.getCart(emailId, cartId));
+    }
+
+    @Override
+    @Transactional
+    public CartDTO updateProductQuantityInCart(Long productId, int quantity) {
+        ProductDocument product = catalogProduct(productId);
+        return cartStore.apply(authUtil.loggedInUserEmail(), authUtil::getLoggedInUser, cart -> {
+            if (product.getQuantity() < quantity) {
+                throw new APIException("Please, make an order of the " + product.getProductName()
+                        + " less than or equal to the quantity " + product.getQuantity() + ".");
+            }
+            CartLine line = cart.getLine(productId);
+            if (line == null) {
+                throw new APIException("Product " + product.getProductName() + " does not exist in the cart");
+            }
+            int newQuantity = line.quantity() + quantity;
+            if (newQuantity < 0) {
+                throw new APIException("Quantity cannot be negative");
+            }
+            if (newQuantity == 0) {
+                cart.removeLine(productId);
+                cartItemRepository.deleteCartItemByProductIdAndCartId(productId, cart.getCartId());
+            } else {
+                cart.putLine(new CartLine(productId, newQuantity, product.getSpecialPrice(), product.getDiscount()));
+            }
+            return toCartDTO(cart);
+        });
+    }
+
+    @Override
+    @Transactional
+    public String deleteProductFromCart(Long cartId, Long productId) {
+        return cartStore.applyIfActive(cartId, cart -> {
+            if (cart.removeLine(productId) == null) {
+                throw new ResourceNotFoundException("Cart", "cartId", cartId);
+            }
+            cartItemRepository.deleteCartItemByProductIdAndCartId(productId, cartId);
+            ProductDocument product = productSearchIndex.get(productId);
+            return "Product" + (product != null ? product.getProductName() : productId) + " removed from cart successfully.";
+        }).orElseGet(() -> databaseCartService.deleteProductFromCart(cartId, productId));
+    }
+
+    @Override
+    public void updateProductInCarts(Long cartId, Long productId) {
+        ProductDocument product = catalogProduct(productId);
+        cartStore.applyIfActive(cartId, cart -> {
+            CartLine line = cart.getLine(productId);
+            if (line == null) {
+                throw new APIException("Product " + product.getProductName() + " does not exist in the cart");
+            }
+            cart.putLine(new CartLine(productId, line.quantity(), product.getSpecialPrice(), line.discount()));
+            return cart;
+        }).ifPresentOrElse(cart -> {
+        }, () -> databaseCartService.updateProductInCarts(cartId, productId));
+    }
+
+    //stored carts are repriced in the database, CartStore reprices the held ones when the product change commits
+    @Override
+    public int repriceProductInCarts(Long productId, double newPrice) {
+        return databaseCartService.repriceProductInCarts(productId, newPrice);
+    }
+
+    @Override
+    public CartDTO createOrUpdateCartWithItems(List<CartItemDTO> cartItems) {
+        List<CartLine> lines = cartItems.stream()
+                .map(cartItem -> {
+                    ProductDocument product = catalogProduct(cartItem.getProductId());
+                    return new CartLine(cartItem.getProductId(), cartItem.getQuantity(),
+                            product.getSpecialPrice(), product.getDiscount());
+                })
+                .toList();
+        return cartStore.apply(authUtil.loggedInUserEmail(), authUtil::getLoggedInUser, cart -> {
+            cart.clear();
+            lines.forEach(cart::putLine);
+            return toCartDTO(cart);
+        });
+    }
+
+    @Override
+    public CartDTO mergeGuestCart(List<CartItemDTO> cartItems) {
+        return cartStore.apply(authUtil.loggedInUserEmail(), authUtil::getLoggedInUser, cart -> {
+            for (CartItemDTO guestItem : cartItems) {
+                ProductDocument product = productSearchIndex.get(guestItem.getProductId());
+                if (product == null || product.getQuantity() <= 0) {
+                    continue;
+                }
+                CartLine line = cart.getLine(product.getProductId());
+                if (line != null) {
+                    cart.putLine(new CartLine(line.productId(),
+                            Math.min(line.quantity() + guestItem.getQuantity(), product.getQuantity()),
+                            line.productPrice(), line.discount()));
+                } else {
+                    cart.putLine(new CartLine(product.getProductId(),
+                            Math.min(guestItem.getQuantity(), product.getQuantity()),
+                            product.getSpecialPrice(), product.getDiscount()));
+                }
+            }
+            return toCartDTO(cart);
+        });
+    }
+
+    @Override
+    public void flushCart(String emailId) {
+        cartStore.evict(emailId);
+    }
+
+    private ProductDocument catalogProduct(Long productId) {
+        ProductDocument product = productSearchIndex.get(productId);
+        if (product == null) {
+            throw new ResourceNotFoundException("Product", "productId", productId);
+        }
+        return product;
+    }
+
+    //same shape CartMapper produces: the current product with the line quantity
+    private CartDTO toCartDTO(ActiveCart cart) {
+        CartDTO cartDTO = new CartDTO();
+        cartDTO.setCartId(cart.getCartId());
+        cartDTO.setTotalPrice(cart.getTotalPrice());
+        cartDTO.setProducts(cart.getLines().stream()
+                .map(line -> {
+                    ProductDocument product = productSearchIndex.get(line.productId());
+                    if (product == null) {
+                        return null;
+                    }
+                    ProductDTO productDTO = product.toProductDTO();
+                    productDTO.setQuantity(line.quantity());
+                    return productDTO;
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+        return cartDTO;
+    }
+}
@@ -0,0 +1,53 @@
+package com.ecommerce.ecommerce.util;
+
+//A single satisfiable range of a Range: bytes=... header, end inclusive
+public record ByteRange(long start, long end) {
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String contentRange(long total) {
+        return "bytes " + start + "-" + end + "/" + total;
+    }
+
+    //null means serve the whole body: no header, a unit other than bytes or several ranges;
+    //an unparsable or unsatisfiable range throws IllegalArgumentException and is answered with 416
+    public static ByteRange parse(String header, long total) {
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        if (spec.contains(",")) {
+            return null;
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            throw new IllegalArgumentException("Invalid range " + header);
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                //suffix range: the last n bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    throw new IllegalArgumentException("Invalid range " + header);
+                }
+                start = Math.max(0, total - suffix);
+                end = total - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? total - 1 : Math.min(Long.parseLong(last), total - 1);
+            }
+            if (start < 0 || start >= total || end < start) {
+                throw new IllegalArgumentException("Unsatisfiable range " + header);
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid range " + header, e);
+        }
+    }
+}
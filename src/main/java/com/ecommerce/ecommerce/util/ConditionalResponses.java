@@ -0,0 +1,26 @@
+package com.ecommerce.ecommerce.util;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+//Responses for ETag validated catalog reads: clients and the CDN may store them but have to revalidate every time
+public final class ConditionalResponses {
+
+    private ConditionalResponses() {
+    }
+
+    public static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .build();
+    }
+
+    public static <T> ResponseEntity<T> ok(String eTag, T body) {
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(body);
+    }
+}
@@ -0,0 +1,174 @@
+package com.ecommerce.ecommerce.util;
+
+import com.ecommerce.ecommerce.exceptions.APIException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+//Opaque continuation token for keyset (seek) pagination: the sort key and id of the last row of the previous page.
+//A listing can also be ordered by a leading key before the requested one (category listings go by price first); the
+//cursor then carries that key's last value as well. NULL sort values sort lowest, as on MySQL: first ascending,
+//last descending.
+@Getter
+@AllArgsConstructor
+public class PageCursor {
+    private static final String SEPARATOR = "\n";
+    //a present value is written after this marker, an empty field is a null
+    private static final String PRESENT = "=";
+
+    private final String leadingBy;
+    private final String leadingValue;
+    private final String sortBy;
+    private final boolean ascending;
+    private final Long lastId;
+    private final String lastValue;
+
+    public PageCursor(String sortBy, boolean ascending, Long lastId, String lastValue) {
+        this(null, null, sortBy, ascending, lastId, lastValue);
+    }
+
+    public static PageCursor after(Object row, String sortBy, boolean ascending, String idAttribute) {
+        return after(row, null, sortBy, ascending, idAttribute);
+    }
+
+    public static PageCursor after(Object row, String leadingBy, String sortBy, boolean ascending, String idAttribute) {
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(row);
+        Long id = (Long) wrapper.getPropertyValue(idAttribute);
+        String leadingValue = leadingBy == null ? null : toString(wrapper.getPropertyValue(leadingBy));
+        return new PageCursor(leadingBy, leadingValue, sortBy, ascending, id, toString(wrapper.getPropertyValue(sortBy)));
+    }
+
+    //the last value goes last, it is the only field free to hold line breaks
+    public String encode() {
+        String raw = sortBy + SEPARATOR + (ascending ? "a" : "d") + SEPARATOR + lastId
+                + SEPARATOR + (leadingBy == null ? "" : leadingBy) + SEPARATOR + encodeValue(leadingValue)
+                + SEPARATOR + encodeValue(lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 6);
+            if (parts.length != 6) {
+                throw new APIException("Invalid page cursor");
+            }
+            return new PageCursor(parts[3].isEmpty() ? null : parts[3], decodeValue(parts[4]),
+                    parts[0], "a".equals(parts[1]), Long.valueOf(parts[2]), decodeValue(parts[5]));
+        } catch (IllegalArgumentException e) {
+            throw new APIException("Invalid page cursor");
+        }
+    }
+
+    //the cursor has to come from a page with the same ordering, otherwise the seek predicate is meaningless
+    public void verify(String sortBy, boolean ascending) {
+        verify(null, sortBy, ascending);
+    }
+
+    public void verify(String leadingBy, String sortBy, boolean ascending) {
+        if (!Objects.equals(this.leadingBy, leadingBy) || !this.sortBy.equals(sortBy) || this.ascending != ascending) {
+            throw new APIException("Page cursor does not match sortBy " + sortBy + " and sortOrder "
+                    + (ascending ? "asc" : "desc"));
+        }
+    }
+
+    public static Sort sort(String sortBy, boolean ascending, String idAttribute) {
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return sortBy.equals(idAttribute)
+                ? Sort.by(direction, idAttribute)
+                : Sort.by(direction, sortBy).and(Sort.by(direction, idAttribute));
+    }
+
+    //the leading key ascending, then the requested key and the id; a requested key equal to the leading one adds nothing
+    public static Sort sort(String leadingBy, String sortBy, boolean ascending, String idAttribute) {
+        if (leadingBy == null) {
+            return sort(sortBy, ascending, idAttribute);
+        }
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(Sort.Direction.ASC, leadingBy).and(sortBy.equals(leadingBy)
+                ? Sort.by(direction, idAttribute)
+                : sort(sortBy, ascending, idAttribute));
+    }
+
+    //(leadingKey, sortKey, id) strictly beyond the last row, in the order sort() gives
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> Specification<T> toSpecification(String idAttribute) {
+        return (root, query, criteriaBuilder) -> {
+            Path<Long> id = root.get(idAttribute);
+            Predicate beyond = ascending
+                    ? criteriaBuilder.greaterThan(id, lastId)
+                    : criteriaBuilder.lessThan(id, lastId);
+            if (!sortBy.equals(idAttribute) && !sortBy.equals(leadingBy)) {
+                beyond = seek(criteriaBuilder, root.get(sortBy), lastValue, ascending, beyond);
+            }
+            if (leadingBy != null) {
+                beyond = seek(criteriaBuilder, root.get(leadingBy), leadingValue, true, beyond);
+            }
+            return beyond;
+        };
+    }
+
+    //key beyond the value, or equal to it and the rest beyond; IS NULL stands in for equality with a null
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate seek(CriteriaBuilder criteriaBuilder, Path<Comparable> key, String rawValue,
+                                  boolean ascending, Predicate restBeyond) {
+        Predicate keyBeyond;
+        Predicate keyEqual;
+        if (rawValue == null) {
+            //nulls come first ascending, so every non-null follows; descending they come last, nothing does
+            keyBeyond = ascending ? criteriaBuilder.isNotNull(key) : criteriaBuilder.disjunction();
+            keyEqual = criteriaBuilder.isNull(key);
+        } else {
+            Comparable value = convert(rawValue, key.getJavaType());
+            keyBeyond = ascending
+                    ? criteriaBuilder.greaterThan(key, value)
+                    : criteriaBuilder.or(criteriaBuilder.lessThan(key, value), criteriaBuilder.isNull(key));
+            keyEqual = criteriaBuilder.equal(key, value);
+        }
+        return criteriaBuilder.or(keyBeyond, criteriaBuilder.and(keyEqual, restBeyond));
+    }
+
+    private static String toString(Object value) {
+        return value == null ? null : String.valueOf(value);
+    }
+
+    private static String encodeValue(String value) {
+        return value == null ? "" : PRESENT + value;
+    }
+
+    private static String decodeValue(String field) {
+        if (field.isEmpty()) {
+            return null;
+        }
+        if (!field.startsWith(PRESENT)) {
+            throw new APIException("Invalid page cursor");
+        }
+        return field.substring(PRESENT.length());
+    }
+
+    private static Comparable<?> convert(String value, Class<?> type) {
+        try {
+            if (type == String.class) {
+                return value;
+            } else if (type == Long.class || type == long.class) {
+                return Long.valueOf(value);
+            } else if (type == Integer.class || type == int.class) {
+                return Integer.valueOf(value);
+            } else if (type == Double.class || type == double.class) {
+                return Double.valueOf(value);
+            }
+        } catch (NumberFormatException e) {
+            throw new APIException("Invalid page cursor");
+        }
+        throw new APIException("Cursor pagination is not supported for this sort field");
+    }
+}
@@ -0,0 +1,27 @@
+package com.ecommerce.benchmark;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+//Order as it was mapped before pooled ids. Kept outside the application's packages so only the insert benchmark,
+//which scans this package explicitly, creates its table.
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "benchmark_identity_orders")
+public class IdentityOrder {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private String email;
+    private LocalDate orderDate;
+    private Double totalAmount;
+    private String orderStatus;
+}
@@ -0,0 +1,35 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.ecommerce.model.Product;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//OrderItem as it was mapped before pooled ids
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "benchmark_identity_order_items")
+public class IdentityOrderItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long orderItemId;
+
+    @ManyToOne
+    @JoinColumn(name = "product_id")
+    private Product product;
+
+    @ManyToOne
+    @JoinColumn(name = "order_id")
+    private IdentityOrder order;
+
+    private Integer quantity;
+    private double discount;
+    private double orderedProductPrice;
+}
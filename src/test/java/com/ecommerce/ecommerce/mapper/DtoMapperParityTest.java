@@ -0,0 +1,148 @@
+package com.ecommerce.ecommerce.mapper;
+
+import com.ecommerce.ecommerce.model.Address;
+import com.ecommerce.ecommerce.model.Cart;
+import com.ecommerce.ecommerce.model.CartItem;
+import com.ecommerce.ecommerce.model.Category;
+import com.ecommerce.ecommerce.model.Order;
+import com.ecommerce.ecommerce.model.OrderItem;
+import com.ecommerce.ecommerce.model.Payment;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.payload.AddressDTO;
+import com.ecommerce.ecommerce.payload.CartDTO;
+import com.ecommerce.ecommerce.payload.CategoryDTO;
+import com.ecommerce.ecommerce.payload.OrderDTO;
+import com.ecommerce.ecommerce.payload.OrderItemDTO;
+import com.ecommerce.ecommerce.payload.ProductDTO;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+//The generated mappers have to produce exactly what the reflective ModelMapper setup produced,
+//including the post-processing the services used to do by hand
+class DtoMapperParityTest {
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final ProductMapper productMapper = new ProductMapperImpl();
+    private final CategoryMapper categoryMapper = new CategoryMapperImpl();
+    private final AddressMapper addressMapper = new AddressMapperImpl();
+    private final CartMapper cartMapper = new CartMapperImpl(productMapper);
+    private final OrderMapper orderMapper = new OrderMapperImpl(productMapper);
+
+    @Test
+    void productMatchesModelMapper() {
+        Product product = product(7L, "Wireless Mouse", 25);
+
+        assertEquals(modelMapper.map(product, ProductDTO.class), productMapper.toProductDTO(product));
+    }
+
+    @Test
+    void productDTOToEntityMatchesModelMapper() {
+        ProductDTO productDTO = productMapper.toProductDTO(product(7L, "Wireless Mouse", 25));
+
+        Product expected = modelMapper.map(productDTO, Product.class);
+        Product actual = productMapper.toProduct(productDTO);
+
+        assertEquals(expected.getProductId(), actual.getProductId());
+        assertEquals(expected.getProductName(), actual.getProductName());
+        assertEquals(expected.getImage(), actual.getImage());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+        assertEquals(expected.getPrice(), actual.getPrice());
+        assertEquals(expected.getDiscount(), actual.getDiscount());
+        assertEquals(expected.getSpecialPrice(), actual.getSpecialPrice());
+        assertNull(actual.getCategory());
+        assertNull(actual.getUser());
+        assertEquals(expected.getProducts(), actual.getProducts());
+    }
+
+    @Test
+    void categoryMatchesModelMapperBothWays() {
+        Category category = new Category(3L, "Electronics", null);
+        CategoryDTO categoryDTO = new CategoryDTO(3L, "Electronics");
+
+        assertEquals(modelMapper.map(category, CategoryDTO.class), categoryMapper.toCategoryDTO(category));
+
+        Category expected = modelMapper.map(categoryDTO, Category.class);
+        Category actual = categoryMapper.toCategory(categoryDTO);
+        assertEquals(expected.getCategoryId(), actual.getCategoryId());
+        assertEquals(expected.getCategoryName(), actual.getCategoryName());
+    }
+
+    @Test
+    void addressMatchesModelMapperBothWays() {
+        Address address = new Address(11L, "Main Street", "Tower A", "Pune", "Maharashtra", "India", "411001", null);
+
+        AddressDTO addressDTO = modelMapper.map(address, AddressDTO.class);
+        assertEquals(addressDTO, addressMapper.toAddressDTO(address));
+
+        Address expected = modelMapper.map(addressDTO, Address.class);
+        Address actual = addressMapper.toAddress(addressDTO);
+        assertEquals(expected.getAddressId(), actual.getAddressId());
+        assertEquals(expected.getStreet(), actual.getStreet());
+        assertEquals(expected.getZipcode(), actual.getZipcode());
+        assertNull(actual.getUser());
+    }
+
+    @Test
+    void cartMatchesModelMapperWithLineQuantities() {
+        Cart cart = new Cart();
+        cart.setCartId(5L);
+        cart.setTotalPrice(140.0);
+        cart.getCartItems().add(cartItem(cart, product(7L, "Wireless Mouse", 25), 2));
+        cart.getCartItems().add(cartItem(cart, product(8L, "Mechanical Keyboard", 10), 1));
+
+        //what the services used to do: map the cart, then rebuild products from the lines
+        CartDTO expected = modelMapper.map(cart, CartDTO.class);
+        expected.setProducts(cart.getCartItems().stream().map(item -> {
+            ProductDTO productDTO = modelMapper.map(item.getProduct(), ProductDTO.class);
+            productDTO.setQuantity(item.getQuantity());
+            return productDTO;
+        }).toList());
+
+        assertEquals(expected, cartMapper.toCartDTO(cart));
+    }
+
+    @Test
+    void orderMatchesModelMapper() {
+        Payment payment = new Payment("card", "pi_123", "succeeded", "ok", "stripe");
+        payment.setPaymentId(9L);
+        Address address = new Address(11L, "Main Street", "Tower A", "Pune", "Maharashtra", "India", "411001", null);
+        Order order = new Order(21L, "buyer@example.com", new ArrayList<>(), LocalDate.of(2024, 1, 15),
+                140.0, "Order Accepted !", payment, address);
+        OrderItem orderItem = new OrderItem(31L, product(7L, "Wireless Mouse", 25), order, 2, 10.0, 45.0);
+        order.getOrderItems().add(orderItem);
+
+        assertEquals(modelMapper.map(order, OrderDTO.class), orderMapper.toOrderDTO(order));
+        assertEquals(modelMapper.map(orderItem, OrderItemDTO.class), orderMapper.toOrderItemDTO(orderItem));
+    }
+
+    private static Product product(Long id, String name, int quantity) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName(name);
+        product.setImage("default.png");
+        product.setDescription(name + " description");
+        product.setQuantity(quantity);
+        product.setPrice(50.0);
+        product.setDiscount(10.0);
+        product.setSpecialPrice(45.0);
+        product.setCategory(new Category(3L, "Electronics", List.of()));
+        return product;
+    }
+
+    private static CartItem cartItem(Cart cart, Product product, int quantity) {
+        CartItem cartItem = new CartItem();
+        cartItem.setCart(cart);
+        cartItem.setProduct(product);
+        cartItem.setQuantity(quantity);
+        cartItem.setDiscount(product.getDiscount());
+        cartItem.setProductPrice(product.getSpecialPrice());
+        return cartItem;
+    }
+}
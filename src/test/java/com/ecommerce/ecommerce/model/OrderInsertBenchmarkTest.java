@@ -0,0 +1,136 @@
+package com.ecommerce.ecommerce.model;
+
+import com.ecommerce.benchmark.IdentityOrder;
+import com.ecommerce.benchmark.IdentityOrderItem;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//Inserts the rows placeOrder writes (an order and its items) with the pooled ids Order and OrderItem use now and
+//with IDENTITY ids the way they were mapped before, on the same embedded database with the same batch settings.
+//Counts the statements each sends and checks that only the pooled mapping gets its inserts batched; on a MySQL
+//server every statement is a round trip.
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderInsertBenchmarkTest {
+    private static final int ORDERS = 400;
+    private static final int ITEMS_PER_ORDER = 10;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void pooledIdsBatchOrderInserts() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        List<Product> products = transactionTemplate.execute(status -> {
+            List<Product> created = new ArrayList<>();
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                Product product = new Product();
+                product.setProductName("Benchmark product " + i);
+                product.setPrice(20.0);
+                product.setSpecialPrice(18.0);
+                product.setQuantity(1_000_000);
+                entityManager.persist(product);
+                created.add(product);
+            }
+            return created;
+        });
+
+        //the first round of each fills the id generators, only the second is counted
+        run(transactionTemplate, products, this::placePooledOrder);
+        run(transactionTemplate, products, this::placeIdentityOrder);
+        long pooled = run(transactionTemplate, products, this::placePooledOrder);
+        long identity = run(transactionTemplate, products, this::placeIdentityOrder);
+
+        assertEquals(2L * ROUNDS * ORDERS * (ITEMS_PER_ORDER + 1), count("Order") + count("OrderItem"));
+        assertEquals(2L * ROUNDS * ORDERS * (ITEMS_PER_ORDER + 1), count("IdentityOrder") + count("IdentityOrderItem"));
+        //IDENTITY needs a round trip per row to learn its id, the pooled rows go out in batches of hibernate.jdbc.batch_size
+        assertTrue(identity >= (long) ROUNDS * ORDERS * (ITEMS_PER_ORDER + 1));
+        assertTrue(pooled * 10 < identity);
+    }
+
+    private long run(TransactionTemplate transactionTemplate, List<Product> products, Consumer<List<Product>> placeOrder) {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(org.hibernate.SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+        for (int round = 0; round < ROUNDS; round++) {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < ORDERS; i++) {
+                    placeOrder.accept(products);
+                }
+                entityManager.flush();
+                entityManager.unwrap(Session.class).clear();
+            });
+        }
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void placePooledOrder(List<Product> products) {
+        Order order = new Order();
+        order.setEmail("benchmark@example.com");
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus("Order Accepted !");
+        order.setTotalAmount(18.0 * products.size());
+        entityManager.persist(order);
+        for (Product product : products) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setOrder(order);
+            orderItem.setProduct(product);
+            orderItem.setQuantity(1);
+            orderItem.setOrderedProductPrice(product.getSpecialPrice());
+            entityManager.persist(orderItem);
+        }
+    }
+
+    private void placeIdentityOrder(List<Product> products) {
+        IdentityOrder order = new IdentityOrder();
+        order.setEmail("benchmark@example.com");
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus("Order Accepted !");
+        order.setTotalAmount(18.0 * products.size());
+        entityManager.persist(order);
+        for (Product product : products) {
+            IdentityOrderItem orderItem = new IdentityOrderItem();
+            orderItem.setOrder(order);
+            orderItem.setProduct(product);
+            orderItem.setQuantity(1);
+            orderItem.setOrderedProductPrice(product.getSpecialPrice());
+            entityManager.persist(orderItem);
+        }
+    }
+
+    private long count(String entityName) {
+        return entityManager.createQuery("SELECT COUNT(e) FROM " + entityName + " e", Long.class).getSingleResult();
+    }
+
+    //the application's entities plus the IDENTITY-mapped copies, which no other test context sees
+    @TestConfiguration
+    @EntityScan(basePackageClasses = {Order.class, IdentityOrder.class})
+    static class BenchmarkEntities {
+    }
+}
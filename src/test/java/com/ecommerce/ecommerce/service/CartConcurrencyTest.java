@@ -0,0 +1,152 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.cart.CartUpdateRetry;
+import com.ecommerce.ecommerce.mapper.CartMapperImpl;
+import com.ecommerce.ecommerce.mapper.ProductMapperImpl;
+import com.ecommerce.ecommerce.model.Cart;
+import com.ecommerce.ecommerce.model.CartItem;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.model.User;
+import com.ecommerce.ecommerce.repositories.CartRepository;
+import com.ecommerce.ecommerce.search.PopularityTracker;
+import com.ecommerce.ecommerce.util.AuthUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+//Many threads change one cart at once: "+" taps on the same line race with products being added. Every change has to
+//land, and the stored total has to match the lines, however the conflicts were resolved.
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "cart.update.max-attempts=50"
+})
+@Import({CartServiceImpl.class, CartUpdateRetry.class, CartMapperImpl.class, ProductMapperImpl.class,
+        SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartConcurrencyTest {
+    private static final String EMAIL = "hammer@example.com";
+    private static final int TAPPING_THREADS = 8;
+    private static final int TAPS_PER_THREAD = 25;
+    private static final int ADDED_PRODUCTS = 8;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private AuthUtil authUtil;
+
+    @MockitoBean
+    private PopularityTracker popularityTracker;
+
+    @Test
+    void concurrentChangesToOneCartAreNotLost() throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        User user = transactionTemplate.execute(status -> {
+            User created = new User("hammer", EMAIL, "secret");
+            entityManager.persist(created);
+            return created;
+        });
+        List<Product> products = transactionTemplate.execute(status -> {
+            List<Product> created = new ArrayList<>();
+            for (int i = 0; i <= ADDED_PRODUCTS; i++) {
+                Product product = new Product();
+                product.setProductName("Hammered product " + i);
+                product.setPrice(10.0);
+                product.setSpecialPrice(2.5 + i);
+                product.setQuantity(1_000_000);
+                entityManager.persist(product);
+                created.add(product);
+            }
+            return created;
+        });
+        when(authUtil.loggedInUserEmail()).thenReturn(EMAIL);
+        when(authUtil.getLoggedInUser()).thenReturn(user);
+
+        Long tappedProductId = products.get(0).getProductId();
+        cartService.addProductToCart(tappedProductId, 1);
+
+        List<Callable<Object>> changes = new ArrayList<>();
+        for (int t = 0; t < TAPPING_THREADS; t++) {
+            changes.add(() -> {
+                for (int i = 0; i < TAPS_PER_THREAD; i++) {
+                    cartService.updateProductQuantityInCart(tappedProductId, 1);
+                }
+                return null;
+            });
+        }
+        for (int p = 1; p <= ADDED_PRODUCTS; p++) {
+            Long productId = products.get(p).getProductId();
+            changes.add(() -> cartService.addProductToCart(productId, 2));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(changes.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Object>> results = new ArrayList<>();
+            for (Callable<Object> change : changes) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return change.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Object> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Cart cart = transactionTemplate.execute(status -> cartRepository.findCartWithItemsByEmail(EMAIL));
+        assertEquals(ADDED_PRODUCTS + 1, cart.getCartItems().size());
+        CartItem tapped = cart.getCartItems().stream()
+                .filter(item -> item.getProduct().getProductId().equals(tappedProductId))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(1 + TAPPING_THREADS * TAPS_PER_THREAD, tapped.getQuantity());
+        double expectedTotal = 2.5 * (1 + TAPPING_THREADS * TAPS_PER_THREAD);
+        for (int p = 1; p <= ADDED_PRODUCTS; p++) {
+            expectedTotal += 2 * (2.5 + p);
+        }
+        assertEquals(expectedTotal, cart.getTotalPrice());
+
+        //every conflict was retried, none ran out of attempts
+        double conflicts = meterRegistry.find("cart.update.conflicts").counters().stream()
+                .mapToDouble(counter -> counter.count()).sum();
+        double retries = meterRegistry.find("cart.update.retries").counters().stream()
+                .mapToDouble(counter -> counter.count()).sum();
+        assertEquals(conflicts, retries);
+    }
+}
@@ -0,0 +1,161 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.cart.CartUpdateRetry;
+import com.ecommerce.ecommerce.mapper.CartMapperImpl;
+import com.ecommerce.ecommerce.mapper.ProductMapperImpl;
+import com.ecommerce.ecommerce.model.Cart;
+import com.ecommerce.ecommerce.model.CartItem;
+import com.ecommerce.ecommerce.model.Category;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.model.User;
+import com.ecommerce.ecommerce.payload.CartDTO;
+import com.ecommerce.ecommerce.search.PopularityTracker;
+import com.ecommerce.ecommerce.util.AuthUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+//The cart endpoints read the cart, its lines and their products with one query however many lines the cart has;
+//a lazy load per line (or per product's own cart lines) shows up here as extra statements
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CartServiceImpl.class, CartUpdateRetry.class, CartMapperImpl.class, ProductMapperImpl.class,
+        SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartReadQueryCountTest {
+    private static final int LINES = 5;
+    //rows are committed, so every test gets users of its own
+    private static int run;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private AuthUtil authUtil;
+
+    @MockitoBean
+    private PopularityTracker popularityTracker;
+
+    private String email;
+    private Long cartId;
+    private List<Long> productIds;
+    private Long extraProductId;
+
+    @BeforeEach
+    void createCarts() {
+        run++;
+        email = "reader" + run + "@example.com";
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Category category = new Category();
+            category.setCategoryName("Hardware " + run);
+            entityManager.persist(category);
+            User seller = new User("seller" + run, "seller" + run + "@example.com", "secret");
+            entityManager.persist(seller);
+            User reader = new User("reader" + run, email, "secret");
+            entityManager.persist(reader);
+            User other = new User("other" + run, "other" + run + "@example.com", "secret");
+            entityManager.persist(other);
+
+            List<Product> products = new ArrayList<>();
+            for (int i = 0; i <= LINES; i++) {
+                Product product = new Product();
+                product.setProductName("Counted product " + i);
+                product.setPrice(10.0);
+                product.setSpecialPrice(8.0);
+                product.setQuantity(100);
+                product.setCategory(category);
+                product.setUser(seller);
+                entityManager.persist(product);
+                products.add(product);
+            }
+            //the reader's cart holds the first LINES products, another cart holds them too
+            Cart cart = cart(reader, products.subList(0, LINES));
+            cart(other, products.subList(0, LINES));
+            cartId = cart.getCartId();
+            productIds = products.stream().map(Product::getProductId).toList();
+            extraProductId = productIds.get(LINES);
+        });
+        when(authUtil.loggedInUserEmail()).thenReturn(email);
+        statistics().clear();
+    }
+
+    @Test
+    void getCartIsOneQuery() {
+        CartDTO cart = cartService.getCart(email, cartId);
+
+        assertEquals(LINES, cart.getProducts().size());
+        assertEquals(1, statistics().getPrepareStatementCount());
+    }
+
+    @Test
+    void updateQuantityReadsTheCartOnce() {
+        CartDTO cart = cartService.updateProductQuantityInCart(productIds.get(0), 1);
+
+        assertEquals(LINES, cart.getProducts().size());
+        assertNoLazyLoads();
+        //cart id, product, line, line increment, total increment, cart read
+        assertEquals(6, statistics().getPrepareStatementCount());
+    }
+
+    @Test
+    void addProductReadsTheCartOnce() {
+        CartDTO cart = cartService.addProductToCart(extraProductId, 1);
+
+        assertEquals(LINES + 1, cart.getProducts().size());
+        assertNoLazyLoads();
+        //cart read, product, line insert, cart update
+        assertEquals(4, statistics().getPrepareStatementCount());
+    }
+
+    private Cart cart(User user, List<Product> products) {
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cart.setTotalPrice(8.0 * products.size());
+        entityManager.persist(cart);
+        for (Product product : products) {
+            CartItem cartItem = new CartItem();
+            cartItem.setCart(cart);
+            cartItem.setProduct(product);
+            cartItem.setQuantity(1);
+            cartItem.setProductPrice(product.getSpecialPrice());
+            entityManager.persist(cartItem);
+        }
+        return cart;
+    }
+
+    private void assertNoLazyLoads() {
+        assertEquals(0, statistics().getCollectionFetchCount());
+        assertEquals(0, statistics().getEntityFetchCount());
+    }
+
+    private Statistics statistics() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+}
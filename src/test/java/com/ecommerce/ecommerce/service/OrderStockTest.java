@@ -0,0 +1,201 @@
+package com.ecommerce.ecommerce.service;
+
+import com.ecommerce.ecommerce.cart.CartUpdateRetry;
+import com.ecommerce.ecommerce.exceptions.APIException;
+import com.ecommerce.ecommerce.mapper.CartMapperImpl;
+import com.ecommerce.ecommerce.mapper.OrderMapperImpl;
+import com.ecommerce.ecommerce.mapper.ProductMapperImpl;
+import com.ecommerce.ecommerce.model.Address;
+import com.ecommerce.ecommerce.model.Cart;
+import com.ecommerce.ecommerce.model.CartItem;
+import com.ecommerce.ecommerce.model.Product;
+import com.ecommerce.ecommerce.model.User;
+import com.ecommerce.ecommerce.search.PopularityTracker;
+import com.ecommerce.ecommerce.util.AuthUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//placeOrder takes stock with conditional decrements: an order either gets every line or nothing, and orders racing
+//for the last units never take more than there is.
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@Import({OrderServiceImpl.class, CartServiceImpl.class, CartUpdateRetry.class, CartMapperImpl.class,
+        OrderMapperImpl.class, ProductMapperImpl.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderStockTest {
+    private static final int BUYERS = 8;
+    private static final int STOCK = 3;
+    //rows are committed, so every test gets users of its own
+    private static int run;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private AuthUtil authUtil;
+
+    @MockitoBean
+    private PopularityTracker popularityTracker;
+
+    private TransactionTemplate transactionTemplate;
+    private Long addressId;
+
+    @BeforeEach
+    void createAddress() {
+        run++;
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        addressId = transactionTemplate.execute(status -> {
+            Address address = new Address("Main street", "Building 1", "Springfield", "IL", "USA", "627010");
+            entityManager.persist(address);
+            return address.getAddressId();
+        });
+    }
+
+    @Test
+    void shortLineFailsTheWholeOrder() {
+        Long plentyId = product("Plenty", 10);
+        Long scarceId = product("Scarce", 1);
+        String email = buyer("short", List.of(plentyId, scarceId), List.of(3, 2));
+
+        APIException exception = assertThrows(APIException.class, () -> placeOrder(email));
+
+        assertEquals("Not enough stock left for Scarce " + run, exception.getMessage());
+        //the plenty line was decremented before the scarce one was found short, the rollback gave it back
+        assertEquals(10, stock(plentyId));
+        assertEquals(1, stock(scarceId));
+        assertEquals(2, cartLines(email));
+    }
+
+    @Test
+    void linesOfOneProductTakeTheirSum() {
+        Long productId = product("Doubled", 5);
+        String email = buyer("doubled", List.of(productId, productId), List.of(2, 2));
+
+        placeOrder(email);
+
+        assertEquals(1, stock(productId));
+        assertEquals(0, cartLines(email));
+    }
+
+    @Test
+    void concurrentOrdersCannotOversell() throws Exception {
+        Long productId = product("Last units", STOCK);
+        List<String> emails = new ArrayList<>();
+        for (int b = 0; b < BUYERS; b++) {
+            emails.add(buyer("racer" + b + "-", List.of(productId), List.of(1)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS);
+        int placed = 0;
+        int refused = 0;
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Object>> results = new ArrayList<>();
+            for (String email : emails) {
+                Callable<Object> order = () -> {
+                    start.await();
+                    return placeOrder(email);
+                };
+                results.add(executor.submit(order));
+            }
+            start.countDown();
+            for (Future<Object> result : results) {
+                try {
+                    result.get();
+                    placed++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(APIException.class, e.getCause());
+                    refused++;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(STOCK, placed);
+        assertEquals(BUYERS - STOCK, refused);
+        assertEquals(0, stock(productId));
+    }
+
+    private Object placeOrder(String email) {
+        return orderService.placeOrder(email, addressId, "card", "stripe", "pg-1", "succeeded", "ok");
+    }
+
+    private Long product(String name, int quantity) {
+        return transactionTemplate.execute(status -> {
+            Product product = new Product();
+            product.setProductName(name + " " + run);
+            product.setPrice(10.0);
+            product.setSpecialPrice(8.0);
+            product.setQuantity(quantity);
+            entityManager.persist(product);
+            return product.getProductId();
+        });
+    }
+
+    //a cart with one line per product, repeated products included
+    private String buyer(String name, List<Long> productIds, List<Integer> quantities) {
+        String email = name + run + "@example.com";
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = new User(name + run, email, "secret");
+            entityManager.persist(user);
+            Cart cart = new Cart();
+            cart.setUser(user);
+            cart.setTotalPrice(0.0);
+            entityManager.persist(cart);
+            for (int i = 0; i < productIds.size(); i++) {
+                Product product = entityManager.find(Product.class, productIds.get(i));
+                CartItem cartItem = new CartItem();
+                cartItem.setCart(cart);
+                cartItem.setProduct(product);
+                cartItem.setQuantity(quantities.get(i));
+                cartItem.setProductPrice(product.getSpecialPrice());
+                entityManager.persist(cartItem);
+                cart.setTotalPrice(cart.getTotalPrice() + product.getSpecialPrice() * quantities.get(i));
+            }
+        });
+        return email;
+    }
+
+    private int stock(Long productId) {
+        return transactionTemplate.execute(status -> entityManager.find(Product.class, productId).getQuantity());
+    }
+
+    private long cartLines(String email) {
+        return transactionTemplate.execute(status -> entityManager.createQuery(
+                        "SELECT COUNT(ci) FROM CartItem ci WHERE ci.cart.user.email = :email", Long.class)
+                .setParameter("email", email)
+                .getSingleResult());
+    }
+}